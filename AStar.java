@@ -0,0 +1,107 @@
+import java.util.function.IntUnaryOperator;
+import heap.IndexedIntHeap;
+
+/**
+ * This class implements the A* algorithm: Dijkstra's algorithm on edge
+ * weights reduced by a potential, a lower bound for the distance of a node
+ * to the target node. The better the bound, the fewer nodes are settled.
+ *
+ * The potential must be consistent: for every edge (u, v) of weight w,
+ * potential(u) must not exceed w + potential(v). Then every node is
+ * settled at most once and the route found is a shortest one.
+ */
+class AStar {
+  private static final int INFINITY = SearchContext.INFINITY;
+
+  private AStar() {
+  }
+
+  /**
+   * This method searches for the shortest route between two nodes.
+   *
+   * @param graph the frozen graph
+   * @param context the search context to use
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   * @param potential lower bound for the distance of a node to 'toNode'
+   *
+   * @return the route and its length or 'null' if there is no route
+   */
+  public static RoutingResult route(CompactGraph graph, SearchContext context, int fromNode, int toNode,
+      IntUnaryOperator potential) {
+    SearchContext.SearchState state = context.forward();
+    if (search(graph, state, new int[] { fromNode }, new int[] { 0 }, new int[] { toNode }, new int[] { 0 },
+        potential) < 0)
+      return null;
+    return new RoutingResult(state.path(graph, fromNode, toNode), state.getDist(toNode));
+  }
+
+  /**
+   * This method searches for the shortest route from a set of start nodes
+   * to a set of target nodes. Each start node has an initial distance and
+   * each target node a distance that is added when the route ends there,
+   * as if there were a virtual start node and a virtual target node. The
+   * start nodes have no predecessor and no edge in the state.
+   *
+   * @param graph the frozen graph
+   * @param state the reset state to search in
+   * @param sources the start nodes
+   * @param sourceDists the initial distances of the start nodes
+   * @param targets the target nodes
+   * @param targetDists the distances added at the target nodes
+   * @param potential lower bound for the distance of a node to the
+   * virtual target node
+   *
+   * @return the position in 'targets' of the target node the shortest
+   * route ends at, -1 if there is no route
+   */
+  static int search(CompactGraph graph, SearchContext.SearchState state, int[] sources, int[] sourceDists,
+      int[] targets, int[] targetDists, IntUnaryOperator potential) {
+    IndexedIntHeap heap = state.getHeap();
+
+    for (int i = 0; i < sources.length; i++)
+      if (sourceDists[i] < state.getDist(sources[i])) {
+        state.setDist(sources[i], sourceDists[i]);
+        state.setPrev(sources[i], -1);
+        state.setEdge(sources[i], -1);
+        state.push(sources[i], sourceDists[i] + potential.applyAsInt(sources[i]));
+      }
+
+    int best = INFINITY;
+    int bestTarget = -1;
+    while (heap.getSize() > 0 && heap.getKey(heap.peek()) < best) {
+      int key = heap.getKey(heap.peek());
+      int min = state.poll();
+      int distMin = state.getDist(min);
+      for (int i = 0; i < targets.length; i++)
+        if (targets[i] == min && distMin + targetDists[i] < best) {
+          best = distMin + targetDists[i];
+          bestTarget = i;
+        }
+      if (best <= key)
+        break;
+      state.countRelaxations(graph.endEdge(min) - graph.firstEdge(min));
+      for (int edge = graph.firstEdge(min); edge < graph.endEdge(min); edge++) {
+        int weight = graph.getWeight(edge);
+        if (weight == CompactGraph.CLOSED)
+          continue;
+        int child = graph.getTarget(edge);
+        int distNew = distMin + weight;
+        int distChild = state.getDist(child);
+        if (distNew < distChild) {
+          /*
+           * The key of a node is its distance plus its potential; the
+           * potential of a node is only computed when it is reached first.
+           */
+          int keyChild = distChild == INFINITY ? distNew + potential.applyAsInt(child)
+              : heap.getKey(child) - distChild + distNew;
+          state.setDist(child, distNew);
+          state.setPrev(child, min);
+          state.setEdge(child, edge);
+          state.push(child, keyChild);
+        }
+      }
+    }
+    return bestTarget;
+  }
+}
@@ -0,0 +1,56 @@
+import java.io.IOException;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+/**
+ * This class compares the A* search with the original search on the
+ * query pairs of Nogivan. For every pair, both searches must find routes
+ * of the same length. Usage: java AStarBenchmark [map.osm|map.graph] [rounds]
+ */
+public class AStarBenchmark {
+  private static final MapPoint[][] QUERIES = {
+    { new MapPoint(48.2690197, 11.6751468), new MapPoint(48.2638814, 11.6661943) },
+    { new MapPoint(48.2690197, 11.6751468), new MapPoint(48.003833, 11.317972) },
+    { new MapPoint(48.2690197, 11.6751468), new MapPoint(48.098, 11.508833) },
+    { new MapPoint(47.862916, 11.0275), new MapPoint(48.349388, 11.768416) }
+  };
+
+  private static final SearchMode[] MODES = { SearchMode.DIJKSTRA, SearchMode.ASTAR };
+
+  public static void main(String[] args) throws ParserConfigurationException, SAXException, IOException {
+    String fileName = args.length > 0 ? args[0] : "map.osm";
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    MapGraph g = fileName.endsWith(".graph") ? GraphSnapshot.read(fileName) : MapParser.parseFile(fileName);
+    g.freeze();
+
+    /*
+     * The first round only warms up the JIT compiler.
+     */
+    run(g, 1);
+    long[] nanos = run(g, rounds);
+    for (int q = 0; q < QUERIES.length; q++) {
+      System.out.print("Query " + q + ":");
+      for (int i = 0; i < MODES.length; i++)
+        System.out.printf(" %s %.3f ms", MODES[i], nanos[q * MODES.length + i] / 1e6 / rounds);
+      System.out.println();
+    }
+  }
+
+  private static long[] run(MapGraph g, int rounds) {
+    long[] nanos = new long[QUERIES.length * MODES.length];
+    for (int round = 0; round < rounds; round++)
+      for (int q = 0; q < QUERIES.length; q++) {
+        RoutingResult first = null;
+        for (int i = 0; i < MODES.length; i++) {
+          long start = System.nanoTime();
+          RoutingResult rr = g.route(QUERIES[q][0], QUERIES[q][1], MODES[i]);
+          nanos[q * MODES.length + i] += System.nanoTime() - start;
+          if (i == 0)
+            first = rr;
+          else if ((first == null) != (rr == null) || (rr != null && rr.getDistance() != first.getDistance()))
+            throw new RuntimeException("Different distances for query " + q + " in mode " + MODES[i]);
+        }
+      }
+    return nanos;
+  }
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+import heap.IndexedIntHeap;
+
+/**
+ * This class implements the bidirectional variant of Dijkstra's algorithm.
+ * A forward search from the start node and a backward search from the
+ * target node on the reverse edges are run alternately; the search with
+ * the smaller key is advanced first. The shortest path is known as soon
+ * as the sum of both keys reaches the length of the best path found.
+ */
+class BidirectionalDijkstra {
+  private static final int INFINITY = SearchContext.INFINITY;
+
+  /**
+   * This method searches for the shortest route between two nodes.
+   *
+   * @param graph the frozen graph
+   * @param context the search context to use
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   *
+   * @return the route and its length or 'null' if there is no route
+   */
+  public static RoutingResult route(CompactGraph graph, SearchContext context, int fromNode, int toNode) {
+    /*
+     * The forward search remembers the predecessor of a node on the path
+     * from the start node, the backward search its successor on the path
+     * to the target node.
+     */
+    SearchContext.SearchState forward = context.forward();
+    SearchContext.SearchState backward = context.backward();
+    int meeting = search(graph, forward, backward, new int[] { fromNode }, new int[] { 0 }, new int[] { toNode },
+        new int[] { 0 });
+
+    if (meeting < 0)
+      return null;
+
+    /*
+     * The path is assembled from the start node to the meeting node and
+     * from there to the target node.
+     */
+    OSMNode[] pathForward = forward.path(graph, fromNode, meeting);
+    int length = pathForward.length;
+    for (int node = meeting; node != toNode; node = backward.getPrev(node))
+      length++;
+    OSMNode[] path = Arrays.copyOf(pathForward, length);
+    int node = meeting;
+    for (int i = pathForward.length; i < length; i++) {
+      node = backward.getPrev(node);
+      path[i] = graph.getNode(node);
+    }
+    return new RoutingResult(path, forward.getDist(meeting) + backward.getDist(meeting));
+  }
+
+  /**
+   * This method searches for the shortest route from a set of start nodes
+   * to a set of target nodes. Each start node has an initial distance in
+   * the forward search and each target node in the backward search. The
+   * start and target nodes have no predecessor and no edge in the states;
+   * the backward state stores the forward edge to the successor.
+   *
+   * @param graph the frozen graph
+   * @param forward the reset forward state
+   * @param backward the reset backward state
+   * @param sources the start nodes
+   * @param sourceDists the initial distances of the start nodes
+   * @param targets the target nodes
+   * @param targetDists the initial distances of the target nodes
+   *
+   * @return the node where the searches meet on the shortest route, -1 if
+   * there is no route; the length of the route is the sum of the
+   * distances of this node in both states
+   */
+  static int search(CompactGraph graph, SearchContext.SearchState forward, SearchContext.SearchState backward,
+      int[] sources, int[] sourceDists, int[] targets, int[] targetDists) {
+    IndexedIntHeap heapForward = forward.getHeap();
+    IndexedIntHeap heapBackward = backward.getHeap();
+
+    seed(forward, sources, sourceDists);
+    seed(backward, targets, targetDists);
+
+    int best = INFINITY;
+    int meeting = -1;
+    for (int target : targets) {
+      int distForward = forward.getDist(target);
+      if (distForward != INFINITY && distForward + backward.getDist(target) < best) {
+        best = distForward + backward.getDist(target);
+        meeting = target;
+      }
+    }
+
+    while (heapForward.getSize() > 0 && heapBackward.getSize() > 0) {
+      int keyForward = heapForward.getKey(heapForward.peek());
+      int keyBackward = heapBackward.getKey(heapBackward.peek());
+      if ((long) keyForward + keyBackward >= best)
+        break;
+
+      if (keyForward <= keyBackward) {
+        int min = forward.poll();
+        forward.countRelaxations(graph.endEdge(min) - graph.firstEdge(min));
+        int distMin = forward.getDist(min);
+        for (int edge = graph.firstEdge(min); edge < graph.endEdge(min); edge++) {
+          int weight = graph.getWeight(edge);
+          if (weight == CompactGraph.CLOSED)
+            continue;
+          int child = graph.getTarget(edge);
+          int distNew = distMin + weight;
+          if (distNew < forward.getDist(child)) {
+            forward.setDist(child, distNew);
+            forward.setPrev(child, min);
+            forward.setEdge(child, edge);
+            forward.push(child, distNew);
+          }
+          int distBackward = backward.getDist(child);
+          if (distBackward != INFINITY && distNew + distBackward < best) {
+            best = distNew + distBackward;
+            meeting = child;
+          }
+        }
+      } else {
+        int min = backward.poll();
+        backward.countRelaxations(graph.endReverseEdge(min) - graph.firstReverseEdge(min));
+        int distMin = backward.getDist(min);
+        for (int edge = graph.firstReverseEdge(min); edge < graph.endReverseEdge(min); edge++) {
+          int forwardEdge = graph.getForwardEdge(edge);
+          int weight = graph.getWeight(forwardEdge);
+          if (weight == CompactGraph.CLOSED)
+            continue;
+          int parent = graph.getSource(edge);
+          int distNew = distMin + weight;
+          if (distNew < backward.getDist(parent)) {
+            backward.setDist(parent, distNew);
+            backward.setPrev(parent, min);
+            backward.setEdge(parent, forwardEdge);
+            backward.push(parent, distNew);
+          }
+          int distForward = forward.getDist(parent);
+          if (distForward != INFINITY && distNew + distForward < best) {
+            best = distNew + distForward;
+            meeting = parent;
+          }
+        }
+      }
+    }
+    return meeting;
+  }
+
+  private static void seed(SearchContext.SearchState state, int[] nodes, int[] dists) {
+    for (int i = 0; i < nodes.length; i++)
+      if (dists[i] < state.getDist(nodes[i])) {
+        state.setDist(nodes[i], dists[i]);
+        state.setPrev(nodes[i], -1);
+        state.setEdge(nodes[i], -1);
+        state.push(nodes[i], dists[i]);
+      }
+  }
+}
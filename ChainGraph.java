@@ -0,0 +1,469 @@
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class compresses the chains of nodes of degree 2 in a graph. Most
+ * nodes of OSM ways only shape the geometry of a street; such a node has
+ * the same two neighbours for its incoming and its outgoing edges (or one
+ * incoming and one outgoing edge on a one-way street). The remaining
+ * nodes, the junctions, form a much smaller graph: every chain between two
+ * junctions becomes one edge whose weight is the length of the chain and
+ * which refers to the nodes inside the chain, its geometry.
+ *
+ * A query between two nodes inside chains starts at the junctions at the
+ * ends of the chain of the start node, with the distances along the
+ * chain, and ends at the junctions of the chain of the target node. The
+ * path found on the junctions is expanded with the geometry of its edges.
+ */
+class ChainGraph {
+  private static final int INFINITY = SearchContext.INFINITY;
+
+  /**
+   * The original graph without its closed edges
+   */
+  private CompactGraph graph;
+
+  /**
+   * The graph of the junctions
+   */
+  private CompactGraph junctions;
+
+  /**
+   * The index of each node of the original graph in the junction graph,
+   * -1 if it lies inside a chain
+   */
+  private int[] junctionIndices;
+
+  /**
+   * The index of each junction in the original graph
+   */
+  private int[] junctionNodes;
+
+  /**
+   * The junction each edge of the junction graph starts at
+   */
+  private int[] edgeSources;
+
+  /*
+   * The nodes inside the chain of edge e of the junction graph are
+   * geometry[geometryOffsets[e]] up to geometry[geometryOffsets[e + 1] - 1].
+   * For each of them, the distance from the start of the chain and the
+   * edge are stored.
+   */
+  private int[] geometryOffsets;
+
+  private int[] geometry;
+
+  private int[] geometryDists;
+
+  private int[] geometryEdges;
+
+  /**
+   * The positions in 'geometry' of a node inside a chain: node v is stored
+   * at chainSlots[2 * v] and, if the chain can be used in both directions,
+   * at chainSlots[2 * v + 1]; unused slots are -1.
+   */
+  private int[] chainSlots;
+
+  /**
+   * This constructor compresses a graph. Closed edges, such as those
+   * against the direction of one-way streets, are left out.
+   *
+   * @param graph the frozen graph
+   */
+  ChainGraph(CompactGraph graph) {
+    graph = graph.withoutClosedEdges();
+    this.graph = graph;
+    int n = graph.getNodeCount();
+
+    boolean[] junction = new boolean[n];
+    for (int node = 0; node < n; node++)
+      junction[node] = !isInside(node);
+    /*
+     * A cycle of nodes of degree 2 has no junction to start its chain at,
+     * so one of its nodes becomes a junction.
+     */
+    boolean[] covered = new boolean[n];
+    for (int node = 0; node < n; node++)
+      if (junction[node])
+        cover(node, junction, covered);
+    for (int node = 0; node < n; node++)
+      if (!covered[node]) {
+        junction[node] = true;
+        cover(node, junction, covered);
+      }
+
+    junctionIndices = new int[n];
+    int junctionCount = 0;
+    for (int node = 0; node < n; node++)
+      junctionIndices[node] = junction[node] ? junctionCount++ : -1;
+    junctionNodes = new int[junctionCount];
+    long[] ids = new long[junctionCount];
+    double[] lat = new double[junctionCount];
+    double[] lon = new double[junctionCount];
+    int edgeCount = 0;
+    for (int node = 0; node < n; node++)
+      if (junction[node]) {
+        int index = junctionIndices[node];
+        junctionNodes[index] = node;
+        ids[index] = graph.getId(node);
+        lat[index] = graph.getLat(node);
+        lon[index] = graph.getLon(node);
+        edgeCount += graph.endEdge(node) - graph.firstEdge(node);
+      }
+
+    /*
+     * Every edge leaving a junction starts one chain. The chains of a
+     * junction are sorted by the junction they end at.
+     */
+    int[] offsets = new int[junctionCount + 1];
+    int[] targets = new int[edgeCount];
+    int[] weights = new int[edgeCount];
+    int[] edgeWays = new int[edgeCount];
+    edgeSources = new int[edgeCount];
+    geometryOffsets = new int[edgeCount + 1];
+    int geometrySize = 2 * (n - junctionCount);
+    geometry = new int[geometrySize];
+    geometryDists = new int[geometrySize];
+    geometryEdges = new int[geometrySize];
+    chainSlots = new int[2 * n];
+    Arrays.fill(chainSlots, -1);
+
+    int[] rowTargets = new int[0];
+    int[] rowWeights = new int[0];
+    int[] rowEdges = new int[0];
+    Integer[] order = new Integer[0];
+    int edge = 0;
+    int position = 0;
+    for (int index = 0; index < junctionCount; index++) {
+      offsets[index] = edge;
+      int node = junctionNodes[index];
+      int degree = graph.endEdge(node) - graph.firstEdge(node);
+      if (rowTargets.length < degree) {
+        rowTargets = new int[degree];
+        rowWeights = new int[degree];
+        rowEdges = new int[degree];
+        order = new Integer[degree];
+      }
+      for (int i = 0; i < degree; i++) {
+        int first = graph.firstEdge(node) + i;
+        int weight = graph.getWeight(first);
+        int prev = node;
+        int next = graph.getTarget(first);
+        while (!junction[next]) {
+          int nextEdge = nextEdge(prev, next);
+          weight += graph.getWeight(nextEdge);
+          prev = next;
+          next = graph.getTarget(nextEdge);
+        }
+        rowTargets[i] = junctionIndices[next];
+        rowWeights[i] = weight;
+        rowEdges[i] = first;
+        order[i] = i;
+      }
+      int[] sortTargets = rowTargets;
+      int[] sortWeights = rowWeights;
+      Arrays.sort(order, 0, degree, (a, b) -> sortTargets[a] != sortTargets[b]
+          ? Integer.compare(sortTargets[a], sortTargets[b]) : Integer.compare(sortWeights[a], sortWeights[b]));
+
+      for (int i = 0; i < degree; i++, edge++) {
+        int first = rowEdges[order[i]];
+        targets[edge] = rowTargets[order[i]];
+        weights[edge] = rowWeights[order[i]];
+        edgeWays[edge] = graph.getWayIndex(first);
+        edgeSources[edge] = index;
+        geometryOffsets[edge] = position;
+        int dist = graph.getWeight(first);
+        int prev = node;
+        int next = graph.getTarget(first);
+        while (!junction[next]) {
+          geometry[position] = next;
+          geometryDists[position] = dist;
+          geometryEdges[position] = edge;
+          chainSlots[chainSlots[2 * next] < 0 ? 2 * next : 2 * next + 1] = position;
+          position++;
+          int nextEdge = nextEdge(prev, next);
+          dist += graph.getWeight(nextEdge);
+          prev = next;
+          next = graph.getTarget(nextEdge);
+        }
+      }
+    }
+    offsets[junctionCount] = edge;
+    geometryOffsets[edgeCount] = position;
+    if (position < geometrySize) {
+      geometry = Arrays.copyOf(geometry, position);
+      geometryDists = Arrays.copyOf(geometryDists, position);
+      geometryEdges = Arrays.copyOf(geometryEdges, position);
+    }
+    junctions = new CompactGraph(ids, lat, lon, offsets, targets, weights, edgeWays, graph);
+  }
+
+  /**
+   * This method marks a junction and the nodes inside its chains.
+   */
+  private void cover(int node, boolean[] junction, boolean[] covered) {
+    covered[node] = true;
+    for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++)
+      for (int prev = node, next = graph.getTarget(edge); !junction[next] && !covered[next]; ) {
+        covered[next] = true;
+        int nextEdge = nextEdge(prev, next);
+        prev = next;
+        next = graph.getTarget(nextEdge);
+      }
+  }
+
+  /**
+   * This method decides whether a node lies inside a chain: either it has
+   * one incoming and one outgoing edge to two other nodes, or it is
+   * connected in both directions to exactly two other nodes.
+   */
+  private boolean isInside(int node) {
+    int out = graph.endEdge(node) - graph.firstEdge(node);
+    int in = graph.endReverseEdge(node) - graph.firstReverseEdge(node);
+    int first = graph.firstEdge(node);
+    int firstReverse = graph.firstReverseEdge(node);
+    if (out == 1 && in == 1) {
+      int to = graph.getTarget(first);
+      int from = graph.getSource(firstReverse);
+      return to != from && to != node && from != node;
+    }
+    if (out == 2 && in == 2) {
+      /*
+       * The targets of a node are sorted, and so are the sources of the
+       * reverse edges.
+       */
+      int to0 = graph.getTarget(first);
+      int to1 = graph.getTarget(first + 1);
+      return to0 != to1 && to0 == graph.getSource(firstReverse) && to1 == graph.getSource(firstReverse + 1)
+          && to0 != node && to1 != node;
+    }
+    return false;
+  }
+
+  /**
+   * This method returns the edge that continues a chain at a node inside
+   * it, which has been reached from 'prev'.
+   */
+  private int nextEdge(int prev, int node) {
+    int first = graph.firstEdge(node);
+    return graph.endEdge(node) - first == 1 || graph.getTarget(first) != prev ? first : first + 1;
+  }
+
+  /**
+   * Returns the graph of the junctions.
+   *
+   * @return the junction graph
+   */
+  CompactGraph getJunctions() {
+    return junctions;
+  }
+
+  /**
+   * This method searches for the shortest route between two nodes of the
+   * original graph on the junction graph.
+   *
+   * @param context the search context to use
+   * @param fromNode index of the start node in the original graph
+   * @param toNode index of the target node in the original graph
+   * @param bidirectional 'true' for a bidirectional Dijkstra search,
+   * 'false' for an A* search with the air distance as lower bound
+   *
+   * @return the route and its length or 'null' if there is no route
+   */
+  RoutingResult route(SearchContext context, int fromNode, int toNode, boolean bidirectional) {
+    if (fromNode == toNode)
+      return new RoutingResult(new OSMNode[] { graph.getNode(fromNode) }, 0);
+
+    /*
+     * The search starts at the junctions reached from the start node and
+     * ends at the junctions from which the target node is reached.
+     */
+    int[] sourceSlots = slots(fromNode);
+    int[] sources = new int[sourceSlots.length];
+    int[] sourceDists = new int[sourceSlots.length];
+    for (int i = 0; i < sourceSlots.length; i++) {
+      int slot = sourceSlots[i];
+      if (slot < 0) {
+        sources[i] = junctionIndices[fromNode];
+        continue;
+      }
+      int edge = geometryEdges[slot];
+      sources[i] = junctions.getTarget(edge);
+      sourceDists[i] = junctions.getWeight(edge) - geometryDists[slot];
+    }
+    int[] targetSlots = slots(toNode);
+    int[] targets = new int[targetSlots.length];
+    int[] targetDists = new int[targetSlots.length];
+    for (int i = 0; i < targetSlots.length; i++) {
+      int slot = targetSlots[i];
+      if (slot < 0) {
+        targets[i] = junctionIndices[toNode];
+        continue;
+      }
+      targets[i] = edgeSources[geometryEdges[slot]];
+      targetDists[i] = geometryDists[slot];
+    }
+
+    /*
+     * If both nodes lie inside the same chain in the right order, the
+     * route may not leave the chain at all.
+     */
+    int direct = INFINITY;
+    int directFrom = -1;
+    int directTo = -1;
+    for (int sourceSlot : sourceSlots)
+      for (int targetSlot : targetSlots)
+        if (sourceSlot >= 0 && targetSlot > sourceSlot && geometryEdges[sourceSlot] == geometryEdges[targetSlot]
+            && geometryDists[targetSlot] - geometryDists[sourceSlot] < direct) {
+          direct = geometryDists[targetSlot] - geometryDists[sourceSlot];
+          directFrom = sourceSlot;
+          directTo = targetSlot;
+        }
+
+    SearchContext.SearchState forward = context.forward();
+    int distance = INFINITY;
+    int[] edges = null;
+    int sourceSlot = -1;
+    int targetSlot = -1;
+    if (bidirectional) {
+      SearchContext.SearchState backward = context.backward();
+      int meeting = BidirectionalDijkstra.search(junctions, forward, backward, sources, sourceDists, targets,
+          targetDists);
+      if (meeting >= 0) {
+        distance = forward.getDist(meeting) + backward.getDist(meeting);
+        /*
+         * The forward search yields the edges in reverse order, the
+         * backward search in the order of the path.
+         */
+        int[] edgesForward = trace(forward, meeting);
+        int[] edgesBackward = trace(backward, meeting);
+        edges = new int[edgesForward.length + edgesBackward.length];
+        for (int i = 0; i < edgesForward.length; i++)
+          edges[i] = edgesForward[edgesForward.length - 1 - i];
+        System.arraycopy(edgesBackward, 0, edges, edgesForward.length, edgesBackward.length);
+        sourceSlot = seedSlot(forward, meeting, sources, sourceDists, sourceSlots);
+        targetSlot = seedSlot(backward, meeting, targets, targetDists, targetSlots);
+      }
+    } else {
+      /*
+       * The lower bound to the virtual target node is the smallest bound
+       * to one of the target junctions plus the rest of the chain.
+       */
+      IntUnaryOperator potential = node -> {
+        int bound = INFINITY;
+        for (int i = 0; i < targets.length; i++)
+          bound = Math.min(bound, junctions.potential(node, targets[i]) + targetDists[i]);
+        return bound;
+      };
+      int target = AStar.search(junctions, forward, sources, sourceDists, targets, targetDists, potential);
+      if (target >= 0) {
+        distance = forward.getDist(targets[target]) + targetDists[target];
+        int[] edgesReversed = trace(forward, targets[target]);
+        edges = new int[edgesReversed.length];
+        for (int i = 0; i < edges.length; i++)
+          edges[i] = edgesReversed[edges.length - 1 - i];
+        sourceSlot = seedSlot(forward, targets[target], sources, sourceDists, sourceSlots);
+        targetSlot = targetSlots[target];
+      }
+    }
+
+    if (direct == INFINITY && distance == INFINITY)
+      return null;
+    if (direct <= distance) {
+      OSMNode[] path = new OSMNode[directTo - directFrom + 1];
+      for (int i = 0; i < path.length; i++)
+        path[i] = graph.getNode(geometry[directFrom + i]);
+      return new RoutingResult(path, direct);
+    }
+    return new RoutingResult(path(fromNode, sourceSlot, edges, targetSlot, toNode), distance);
+  }
+
+  /**
+   * This method expands a path of the junction graph into the nodes of the
+   * original graph.
+   *
+   * @param fromNode index of the start node
+   * @param sourceSlot position of the start node in 'geometry', -1 if it
+   * is a junction
+   * @param edges the edges of the junction graph
+   * @param targetSlot position of the target node in 'geometry', -1 if it
+   * is a junction
+   * @param toNode index of the target node
+   *
+   * @return the nodes of the path
+   */
+  private OSMNode[] path(int fromNode, int sourceSlot, int[] edges, int targetSlot, int toNode) {
+    int length = 1;
+    if (sourceSlot >= 0)
+      length += geometryOffsets[geometryEdges[sourceSlot] + 1] - sourceSlot;
+    for (int edge : edges)
+      length += geometryOffsets[edge + 1] - geometryOffsets[edge] + 1;
+    if (targetSlot >= 0)
+      length += targetSlot - geometryOffsets[geometryEdges[targetSlot]] + 1;
+
+    OSMNode[] path = new OSMNode[length];
+    int i = 0;
+    path[i++] = graph.getNode(fromNode);
+    if (sourceSlot >= 0) {
+      int edge = geometryEdges[sourceSlot];
+      for (int position = sourceSlot + 1; position < geometryOffsets[edge + 1]; position++)
+        path[i++] = graph.getNode(geometry[position]);
+      path[i++] = graph.getNode(junctionNodes[junctions.getTarget(edge)]);
+    }
+    for (int edge : edges) {
+      for (int position = geometryOffsets[edge]; position < geometryOffsets[edge + 1]; position++)
+        path[i++] = graph.getNode(geometry[position]);
+      path[i++] = graph.getNode(junctionNodes[junctions.getTarget(edge)]);
+    }
+    if (targetSlot >= 0) {
+      for (int position = geometryOffsets[geometryEdges[targetSlot]]; position < targetSlot; position++)
+        path[i++] = graph.getNode(geometry[position]);
+      path[i++] = graph.getNode(toNode);
+    }
+    return path;
+  }
+
+  /**
+   * This method finds the seed a search has reached a node from: it
+   * follows the predecessors to a node without one and looks up which of
+   * the seeds of that node has set its distance.
+   *
+   * @return the slot of the seed
+   */
+  private static int seedSlot(SearchContext.SearchState state, int node, int[] seeds, int[] seedDists,
+      int[] slots) {
+    while (state.getPrev(node) >= 0)
+      node = state.getPrev(node);
+    for (int i = 0; i < seeds.length; i++)
+      if (seeds[i] == node && seedDists[i] == state.getDist(node))
+        return slots[i];
+    throw new RuntimeException("Invalid search state");
+  }
+
+  /**
+   * This method returns the positions in 'geometry' of a node inside a
+   * chain, or {-1} for a junction.
+   */
+  private int[] slots(int node) {
+    if (junctionIndices[node] >= 0)
+      return new int[] { -1 };
+    if (chainSlots[2 * node + 1] < 0)
+      return new int[] { chainSlots[2 * node] };
+    return new int[] { chainSlots[2 * node], chainSlots[2 * node + 1] };
+  }
+
+  /**
+   * This method collects the edges over which a search has reached a
+   * node, from the node back to a node it started at.
+   */
+  private static int[] trace(SearchContext.SearchState state, int node) {
+    int length = 0;
+    for (int next = node; state.getPrev(next) >= 0; next = state.getPrev(next))
+      length++;
+    int[] edges = new int[length];
+    for (int i = 0, next = node; i < length; i++, next = state.getPrev(next))
+      edges[i] = state.getEdge(next);
+    return edges;
+  }
+}
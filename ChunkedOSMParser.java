@@ -0,0 +1,437 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class reads a file in OSM format in a pipeline. A reader thread
+ * cuts the file into chunks that each begin at a top-level element (node,
+ * way or relation), the workers of a fork-join pool tokenize the chunks
+ * into primitive node buffers and ways, and the calling thread merges the
+ * chunks in file order into a MapGraph.
+ *
+ * The tokenizer only understands as much XML as OSM files use: elements,
+ * attributes in single or double quotes, character references,
+ * comments and declarations. It does not validate the file, and comments
+ * must not contain start tags of nodes, ways or relations since the file
+ * is cut before them.
+ */
+class ChunkedOSMParser {
+  /**
+   * The size of a chunk in bytes; a chunk grows if a single element does
+   * not fit
+   */
+  static final int CHUNK_SIZE = 4 << 20;
+
+  private static final byte[] NODE = bytes("node");
+  private static final byte[] WAY = bytes("way");
+  private static final byte[] RELATION = bytes("relation");
+  private static final byte[] ND = bytes("nd");
+  private static final byte[] TAG = bytes("tag");
+  private static final byte[] ID = bytes("id");
+  private static final byte[] LAT = bytes("lat");
+  private static final byte[] LON = bytes("lon");
+  private static final byte[] REF = bytes("ref");
+  private static final byte[] K = bytes("k");
+  private static final byte[] V = bytes("v");
+
+  private static final double[] POW10 = new double[23];
+
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i < POW10.length; i++)
+      POW10[i] = POW10[i - 1] * 10;
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * The nodes and ways of a chunk
+   */
+  private static class ParsedChunk {
+    private NodeStore nodes = new NodeStore();
+    private ArrayList<OSMWay> ways = new ArrayList<>();
+  }
+
+  private ChunkedOSMParser() {
+  }
+
+  /**
+   * This method reads a file and builds the frozen graph.
+   *
+   * @param fileName name of the OSM file
+   * @param pool the pool that tokenizes the chunks
+   *
+   * @return the frozen graph
+   */
+  static MapGraph parse(String fileName, ForkJoinPool pool) throws IOException {
+    /*
+     * The queue holds the chunks in file order. Its capacity bounds the
+     * number of chunks in memory, so the reader cannot run far ahead of
+     * the merge.
+     */
+    BlockingQueue<Future<ParsedChunk>> chunks = new ArrayBlockingQueue<>(2 * pool.getParallelism() + 1);
+    Thread reader = new Thread(() -> read(fileName, pool, chunks), "osm-reader");
+    reader.setDaemon(true);
+    reader.start();
+
+    MapGraph mapGraph = new MapGraph();
+    ArrayList<NodeStore> nodeStores = new ArrayList<>();
+    try {
+      while (true) {
+        ParsedChunk chunk = chunks.take().get();
+        if (chunk == null)
+          break;
+        for (OSMWay way : chunk.ways)
+          mapGraph.addWay(way);
+        nodeStores.add(chunk.nodes);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw new RuntimeException(e.getCause());
+    } finally {
+      reader.interrupt();
+    }
+
+    /*
+     * Only the nodes that are part of a way are added to the graph.
+     */
+    for (NodeStore nodeStore : nodeStores)
+      for (int i = 0; i < nodeStore.size(); i++)
+        mapGraph.addNode(nodeStore.getId(i), nodeStore.getLat(i), nodeStore.getLon(i));
+    mapGraph.freeze();
+    return mapGraph;
+  }
+
+  /**
+   * This method cuts the file into chunks and submits them to the pool.
+   * The end of the file is marked by a chunk that is null.
+   */
+  private static void read(String fileName, ForkJoinPool pool, BlockingQueue<Future<ParsedChunk>> chunks) {
+    try {
+      try (InputStream in = new FileInputStream(fileName)) {
+        byte[] carry = new byte[0];
+        while (true) {
+          byte[] buffer = Arrays.copyOf(carry, Math.max(CHUNK_SIZE, 2 * carry.length));
+          int length = carry.length;
+          int read = 0;
+          while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) >= 0)
+            length += read;
+          if (read < 0) {
+            byte[] data = buffer;
+            int end = length;
+            chunks.put(pool.submit(() -> tokenize(data, 0, end)));
+            break;
+          }
+          int cut = lastElementStart(buffer, length);
+          if (cut <= 0) {
+            /*
+             * A single element fills the whole buffer, so it is read into a
+             * larger one.
+             */
+            carry = buffer;
+            continue;
+          }
+          carry = Arrays.copyOfRange(buffer, cut, length);
+          chunks.put(pool.submit(() -> tokenize(buffer, 0, cut)));
+        }
+      }
+      chunks.put(CompletableFuture.completedFuture(null));
+    } catch (InterruptedException e) {
+      /*
+       * The merge has failed and does not take any more chunks.
+       */
+    } catch (Throwable e) {
+      try {
+        chunks.put(CompletableFuture.failedFuture(e));
+      } catch (InterruptedException __) {
+      }
+    }
+  }
+
+  /**
+   * This method finds the start of the last top-level element in a buffer.
+   * Nodes, ways and relations are never nested in each other, and '<'
+   * cannot appear in attribute values, so every start tag of them begins
+   * a top-level element.
+   *
+   * @return the position of the '<', -1 if there is none
+   */
+  private static int lastElementStart(byte[] data, int length) {
+    for (int i = length - 1; i >= 0; i--)
+      if (data[i] == '<' && (isStartTag(data, i + 1, length, NODE) || isStartTag(data, i + 1, length, WAY)
+          || isStartTag(data, i + 1, length, RELATION)))
+        return i;
+    return -1;
+  }
+
+  private static boolean isStartTag(byte[] data, int offset, int length, byte[] name) {
+    int end = offset + name.length;
+    return end < length && equals(data, offset, end, name) && !isNameChar(data[end]);
+  }
+
+  private static boolean equals(byte[] data, int start, int end, byte[] name) {
+    if (end - start != name.length)
+      return false;
+    for (int i = 0; i < name.length; i++)
+      if (data[start + i] != name[i])
+        return false;
+    return true;
+  }
+
+  private static boolean isNameChar(byte c) {
+    return c > ' ' && c != '/' && c != '>' && c != '=';
+  }
+
+  private static boolean isWhitespace(byte c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  /**
+   * This method tokenizes a chunk. The ways are built by the same
+   * WayBuilder as in MapParser.
+   */
+  private static ParsedChunk tokenize(byte[] data, int start, int end) {
+    ParsedChunk chunk = new ParsedChunk();
+    WayBuilder way = null;
+    int i = start;
+    while (true) {
+      while (i < end && data[i] != '<')
+        i++;
+      if (++i >= end)
+        break;
+      byte first = data[i];
+      if (first == '/') {
+        int nameEnd = i + 1;
+        while (nameEnd < end && isNameChar(data[nameEnd]))
+          nameEnd++;
+        if (way != null && equals(data, i + 1, nameEnd, WAY)) {
+          way.getFinish().apply(null).ifPresent(chunk.ways::add);
+          way = null;
+        }
+        i = skipTo(data, nameEnd, end, '>');
+        continue;
+      }
+      if (first == '!' || first == '?') {
+        if (i + 2 < end && data[i + 1] == '-' && data[i + 2] == '-') {
+          i += 3;
+          while (i + 2 < end && !(data[i] == '-' && data[i + 1] == '-' && data[i + 2] == '>'))
+            i++;
+        }
+        i = skipTo(data, i, end, '>');
+        continue;
+      }
+
+      int nameStart = i;
+      while (i < end && isNameChar(data[i]))
+        i++;
+      int nameEnd = i;
+      boolean node = equals(data, nameStart, nameEnd, NODE);
+      boolean wayStart = equals(data, nameStart, nameEnd, WAY);
+      boolean nd = way != null && equals(data, nameStart, nameEnd, ND);
+      boolean tag = way != null && equals(data, nameStart, nameEnd, TAG);
+
+      long id = 0;
+      double lat = Double.NaN;
+      double lon = Double.NaN;
+      String k = null;
+      String v = null;
+      boolean hasId = false;
+      boolean hasRef = false;
+      /*
+       * The attributes are read up to the end of the start tag.
+       */
+      while (true) {
+        while (i < end && isWhitespace(data[i]))
+          i++;
+        if (i >= end)
+          throw new RuntimeException("Invalid input");
+        if (data[i] == '>' || data[i] == '/')
+          break;
+        int attributeStart = i;
+        while (i < end && isNameChar(data[i]))
+          i++;
+        int attributeEnd = i;
+        while (i < end && data[i] != '"' && data[i] != '\'')
+          i++;
+        if (i >= end)
+          throw new RuntimeException("Invalid input");
+        byte quote = data[i];
+        int valueStart = ++i;
+        while (i < end && data[i] != quote)
+          i++;
+        if (i >= end)
+          throw new RuntimeException("Invalid input");
+        int valueEnd = i++;
+
+        if (node || wayStart) {
+          if (equals(data, attributeStart, attributeEnd, ID)) {
+            id = parseLong(data, valueStart, valueEnd);
+            hasId = true;
+          } else if (node && equals(data, attributeStart, attributeEnd, LAT))
+            lat = parseDouble(data, valueStart, valueEnd);
+          else if (node && equals(data, attributeStart, attributeEnd, LON))
+            lon = parseDouble(data, valueStart, valueEnd);
+        } else if (nd) {
+          if (equals(data, attributeStart, attributeEnd, REF)) {
+            id = parseLong(data, valueStart, valueEnd);
+            hasRef = true;
+          }
+        } else if (tag) {
+          if (equals(data, attributeStart, attributeEnd, K))
+            k = decode(data, valueStart, valueEnd);
+          else if (equals(data, attributeStart, attributeEnd, V))
+            v = decode(data, valueStart, valueEnd);
+        }
+      }
+      boolean empty = data[i] == '/';
+      i = skipTo(data, i, end, '>');
+
+      if (node) {
+        if (!hasId || Double.isNaN(lat) || Double.isNaN(lon))
+          throw new RuntimeException("Invalid input");
+        chunk.nodes.add(id, lat, lon);
+      } else if (wayStart) {
+        if (way != null || !hasId)
+          throw new RuntimeException("Invalid input");
+        way = MapParser.beginWay(id);
+        if (empty) {
+          way.getFinish().apply(null).ifPresent(chunk.ways::add);
+          way = null;
+        }
+      } else if (nd && hasRef)
+        way.getAddWaypoint().accept(id);
+      else if (tag)
+        way.getAddTag().accept(k, v);
+    }
+    if (way != null)
+      throw new RuntimeException("Invalid input");
+    return chunk;
+  }
+
+  private static int skipTo(byte[] data, int i, int end, char c) {
+    while (i < end && data[i] != c)
+      i++;
+    return i + 1;
+  }
+
+  private static long parseLong(byte[] data, int start, int end) {
+    boolean negative = start < end && data[start] == '-';
+    int i = negative ? start + 1 : start;
+    if (i == end || end - i > 18)
+      return Long.parseLong(new String(data, start, end - start, StandardCharsets.US_ASCII));
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = data[i] - '0';
+      if (digit < 0 || digit > 9)
+        return Long.parseLong(new String(data, start, end - start, StandardCharsets.US_ASCII));
+      value = 10 * value + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * This method parses a decimal number without creating a string. If the
+   * digits fit into 15 decimal places, both the digits and the power of ten
+   * are exact doubles and the division is rounded correctly, so the result
+   * is the same as that of Double.parseDouble(). Other numbers are passed
+   * on to Double.parseDouble().
+   */
+  private static double parseDouble(byte[] data, int start, int end) {
+    boolean negative = start < end && data[start] == '-';
+    int i = negative ? start + 1 : start;
+    long digits = 0;
+    int count = 0;
+    int fraction = -1;
+    for (; i < end; i++) {
+      byte c = data[i];
+      if (c == '.' && fraction < 0)
+        fraction = 0;
+      else if (c >= '0' && c <= '9') {
+        digits = 10 * digits + (c - '0');
+        count++;
+        if (fraction >= 0)
+          fraction++;
+      } else
+        break;
+    }
+    if (i < end || count == 0 || count > 15 || fraction == 0)
+      return Double.parseDouble(new String(data, start, end - start, StandardCharsets.US_ASCII));
+    double value = fraction > 0 ? digits / POW10[fraction] : digits;
+    return negative ? -value : value;
+  }
+
+  /**
+   * This method decodes an attribute value. Character references are
+   * resolved and whitespace characters become spaces, as an XML parser
+   * does.
+   */
+  private static String decode(byte[] data, int start, int end) {
+    String raw = new String(data, start, end - start, StandardCharsets.UTF_8);
+    boolean plain = true;
+    for (int i = 0; i < raw.length() && plain; i++) {
+      char c = raw.charAt(i);
+      plain = c != '&' && c != '\t' && c != '\n' && c != '\r';
+    }
+    if (plain)
+      return raw;
+
+    StringBuilder decoded = new StringBuilder(raw.length());
+    for (int i = 0; i < raw.length(); i++) {
+      char c = raw.charAt(i);
+      if (c == '\t' || c == '\n' || c == '\r') {
+        if (c == '\r' && i + 1 < raw.length() && raw.charAt(i + 1) == '\n')
+          i++;
+        decoded.append(' ');
+        continue;
+      }
+      int semicolon = c == '&' ? raw.indexOf(';', i) : -1;
+      if (semicolon < 0) {
+        decoded.append(c);
+        continue;
+      }
+      String entity = raw.substring(i + 1, semicolon);
+      switch (entity) {
+        case "amp":
+          decoded.append('&');
+          break;
+        case "lt":
+          decoded.append('<');
+          break;
+        case "gt":
+          decoded.append('>');
+          break;
+        case "quot":
+          decoded.append('"');
+          break;
+        case "apos":
+          decoded.append('\'');
+          break;
+        default:
+          if (entity.startsWith("#x"))
+            decoded.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+          else if (entity.startsWith("#"))
+            decoded.appendCodePoint(Integer.parseInt(entity.substring(1)));
+          else
+            throw new RuntimeException("Invalid input");
+          break;
+      }
+      i = semicolon;
+    }
+    return decoded.toString();
+  }
+}
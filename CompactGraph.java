@@ -0,0 +1,825 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class implements a frozen, compact representation of the
+ * street graph. The nodes are numbered densely in the order of their
+ * ids and all edges are stored in primitive arrays in compressed sparse
+ * row format: the edges leaving node i are the entries offsets[i] up to
+ * offsets[i + 1] - 1 of the edge arrays.
+ */
+class CompactGraph {
+  /**
+   * The weight of a closed edge; searches do not follow such edges.
+   */
+  static final int CLOSED = Integer.MAX_VALUE;
+
+  private static final AtomicLong versions = new AtomicLong();
+
+  private static final Highway[] HIGHWAYS = Highway.values();
+
+  /**
+   * The node ids, sorted; the position of an id is the node index.
+   */
+  private long[] ids;
+
+  /**
+   * The node objects; they are created on demand, since most nodes are
+   * never returned. A node is published with compareAndSet(), so threads
+   * that need the same node at the same time all get one object.
+   */
+  private AtomicReferenceArray<OSMNode> nodes;
+
+  private double[] lat;
+
+  private double[] lon;
+
+  /**
+   * The positions of the nodes as unit vectors (x, y, z interleaved)
+   */
+  private double[] xyz;
+
+  private int[] offsets;
+
+  private int[] targets;
+
+  /**
+   * The length of each edge in meters, CLOSED for edges
+   * against the direction of a one-way street; in the graph of a profile
+   * or after an update, the weights may differ (see withWeights())
+   */
+  private int[] weights;
+
+  /*
+   * The reverse adjacency: the edges entering node i are the entries
+   * revOffsets[i] up to revOffsets[i + 1] - 1; for each of them the source
+   * node and the index of the forward edge are stored.
+   */
+  private int[] revOffsets;
+
+  private int[] revSources;
+
+  private int[] revEdges;
+
+  /**
+   * The index of the way each edge belongs to
+   */
+  private int[] edgeWays;
+
+  private long[] wayIds;
+
+  private boolean[] wayOneWay;
+
+  /**
+   * The names of the ways in UTF-8; the name of way i is stored in the
+   * bytes wayNameOffsets[i] up to wayNameOffsets[i + 1] - 1.
+   */
+  private byte[] wayNameBytes;
+
+  private int[] wayNameOffsets;
+
+  /**
+   * The class (Highway ordinal), the speed limit in km/h and the access
+   * restriction of each way
+   */
+  private byte[] wayHighways;
+
+  private int[] wayMaxSpeeds;
+
+  private boolean[] wayRestricted;
+
+  /*
+   * The weights are at least the distance lower bound times boundFactor
+   * divided by boundDivisor (see weightLowerBound()).
+   */
+  private int boundFactor = 1;
+
+  private int boundDivisor = 1;
+
+  /**
+   * The smallest ratio of the weight of an open edge to the chord between
+   * its nodes, slightly reduced (see potential())
+   */
+  private double potentialScale;
+
+  /**
+   * The version of the weights; 0 for the weights computed from the
+   * coordinates, a new number for each set of updated weights
+   */
+  private long version;
+
+  /**
+   * This constructor freezes the ways and nodes collected by a MapGraph.
+   * Node ids are translated to node indices by binary search in sorted
+   * arrays, so no id is boxed or hashed. Edges that lead to nodes without
+   * coordinates are dropped.
+   *
+   * Both directions of every segment of a way are added, since
+   * pedestrians may walk against a one-way street. If several ways
+   * connect the same nodes, the edge of the first way that may be used in
+   * its direction is kept, otherwise the edge of the first way.
+   *
+   * @param referencedIds the ids of all nodes of the ways, sorted and
+   * without duplicates
+   * @param nodeStore coordinates of the nodes; of nodes added twice, the
+   * coordinates added last are used
+   * @param wayList the ways
+   */
+  CompactGraph(long[] referencedIds, NodeStore nodeStore, List<OSMWay> wayList) {
+    int r = referencedIds.length;
+    boolean[] located = new boolean[r];
+    double[] latReferenced = new double[r];
+    double[] lonReferenced = new double[r];
+    for (int i = 0; i < nodeStore.size(); i++) {
+      int position = Arrays.binarySearch(referencedIds, nodeStore.getId(i));
+      if (position < 0)
+        continue;
+      located[position] = true;
+      latReferenced[position] = nodeStore.getLat(i);
+      lonReferenced[position] = nodeStore.getLon(i);
+    }
+    int n = 0;
+    for (int position = 0; position < r; position++)
+      if (located[position])
+        n++;
+    ids = new long[n];
+    nodes = new AtomicReferenceArray<>(n);
+    lat = new double[n];
+    lon = new double[n];
+    int index = 0;
+    for (int position = 0; position < r; position++)
+      if (located[position]) {
+        ids[index] = referencedIds[position];
+        lat[index] = latReferenced[position];
+        lon[index] = lonReferenced[position];
+        index++;
+      }
+    computeUnitVectors();
+
+    /*
+     * The candidate edges are collected in the order of the ways, for each
+     * segment first forward and then backward.
+     */
+    int candidates = 0;
+    for (OSMWay way : wayList)
+      candidates += 2 * (way.getNodes().length - 1);
+    int[] candidateFrom = new int[candidates];
+    int[] candidateTo = new int[candidates];
+    int[] candidateWay = new int[candidates];
+    boolean[] candidateAgainst = new boolean[candidates];
+    int c = 0;
+    for (int w = 0; w < wayList.size(); w++) {
+      OSMWay way = wayList.get(w);
+      long[] nodesWay = way.getNodes();
+      int next = indexOf(nodesWay[0]);
+      for (int i = 0; i < nodesWay.length - 1; i++) {
+        int a = next;
+        int b = indexOf(nodesWay[i + 1]);
+        next = b;
+        if (a < 0 || b < 0)
+          continue;
+        for (int direction = 0; direction < 2; direction++) {
+          candidateFrom[c] = direction == 0 ? a : b;
+          candidateTo[c] = direction == 0 ? b : a;
+          candidateWay[c] = w;
+          candidateAgainst[c] = way.isOneWay() && (direction == 0) == way.isReversed();
+          c++;
+        }
+      }
+    }
+
+    /*
+     * The candidates are sorted by start node with a counting sort, which
+     * keeps their order; each row is then sorted by target, allowed
+     * edges before those against a one-way street, and only the first
+     * candidate of each target is kept.
+     */
+    int[] rowStarts = new int[n + 1];
+    for (int i = 0; i < c; i++)
+      rowStarts[candidateFrom[i] + 1]++;
+    for (int node = 0; node < n; node++)
+      rowStarts[node + 1] += rowStarts[node];
+    int[] order = new int[c];
+    int[] fill = Arrays.copyOf(rowStarts, n);
+    for (int i = 0; i < c; i++)
+      order[fill[candidateFrom[i]]++] = i;
+
+    offsets = new int[n + 1];
+    targets = new int[c];
+    weights = new int[c];
+    edgeWays = new int[c];
+    int[] wayIndices = new int[wayList.size()];
+    Arrays.fill(wayIndices, -1);
+    int wayCount = 0;
+    int edge = 0;
+    for (int i = 0; i < n; i++) {
+      offsets[i] = edge;
+      for (int k = rowStarts[i] + 1; k < rowStarts[i + 1]; k++) {
+        int candidate = order[k];
+        int j = k - 1;
+        while (j >= rowStarts[i] && (candidateTo[order[j]] > candidateTo[candidate]
+            || candidateTo[order[j]] == candidateTo[candidate] && candidateAgainst[order[j]]
+                && !candidateAgainst[candidate])) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = candidate;
+      }
+      for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+        int candidate = order[k];
+        int to = candidateTo[candidate];
+        if (edge > offsets[i] && targets[edge - 1] == to)
+          continue;
+        targets[edge] = to;
+        weights[edge] = candidateAgainst[candidate] ? CLOSED
+            : MapPoint.distance(lat[i], lon[i], lat[to], lon[to]);
+        int way = candidateWay[candidate];
+        if (wayIndices[way] < 0)
+          wayIndices[way] = wayCount++;
+        edgeWays[edge] = wayIndices[way];
+        edge++;
+      }
+    }
+    offsets[n] = edge;
+    targets = Arrays.copyOf(targets, edge);
+    weights = Arrays.copyOf(weights, edge);
+    edgeWays = Arrays.copyOf(edgeWays, edge);
+    computeReverseEdges();
+    computePotentialScale();
+
+    OSMWay[] ways = new OSMWay[wayCount];
+    for (int way = 0; way < wayList.size(); way++)
+      if (wayIndices[way] >= 0)
+        ways[wayIndices[way]] = wayList.get(way);
+    wayIds = new long[ways.length];
+    wayOneWay = new boolean[ways.length];
+    wayHighways = new byte[ways.length];
+    wayMaxSpeeds = new int[ways.length];
+    wayRestricted = new boolean[ways.length];
+    byte[][] names = new byte[ways.length][];
+    wayNameOffsets = new int[ways.length + 1];
+    for (int i = 0; i < ways.length; i++) {
+      wayIds[i] = ways[i].getId();
+      wayOneWay[i] = ways[i].isOneWay();
+      wayHighways[i] = (byte) ways[i].getHighway().ordinal();
+      wayMaxSpeeds[i] = ways[i].getMaxSpeed();
+      wayRestricted[i] = ways[i].isRestricted();
+      names[i] = ways[i].getName().orElse("").getBytes(StandardCharsets.UTF_8);
+      wayNameOffsets[i + 1] = wayNameOffsets[i] + names[i].length;
+    }
+    wayNameBytes = new byte[wayNameOffsets[ways.length]];
+    for (int i = 0; i < ways.length; i++)
+      System.arraycopy(names[i], 0, wayNameBytes, wayNameOffsets[i], names[i].length);
+  }
+
+  /**
+   * This constructor creates a graph from its node and edge arrays. The
+   * targets of the edges of each node must be sorted. The ways are
+   * shared with another graph.
+   *
+   * @param ids node ids, sorted
+   * @param lat node latitudes
+   * @param lon node longitudes
+   * @param offsets first edge of each node, followed by the edge count
+   * @param targets target of each edge
+   * @param weights length of each edge
+   * @param edgeWays way index of each edge in 'ways'
+   * @param ways graph that holds the ways
+   */
+  CompactGraph(long[] ids, double[] lat, double[] lon, int[] offsets, int[] targets, int[] weights, int[] edgeWays,
+      CompactGraph ways) {
+    this.ids = ids;
+    this.lat = lat;
+    this.lon = lon;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+    this.edgeWays = edgeWays;
+    wayIds = ways.wayIds;
+    wayOneWay = ways.wayOneWay;
+    wayNameOffsets = ways.wayNameOffsets;
+    wayNameBytes = ways.wayNameBytes;
+    wayHighways = ways.wayHighways;
+    wayMaxSpeeds = ways.wayMaxSpeeds;
+    wayRestricted = ways.wayRestricted;
+    nodes = new AtomicReferenceArray<>(ids.length);
+    computeUnitVectors();
+    computeReverseEdges();
+    computePotentialScale();
+  }
+
+  /**
+   * This constructor loads a graph from a snapshot.
+   *
+   * @param reader reader positioned at the graph
+   */
+  CompactGraph(GraphSnapshot.Reader reader) throws IOException {
+    int n = reader.readInt();
+    int m = reader.readInt();
+    int w = reader.readInt();
+    ids = reader.readLongs(n);
+    lat = reader.readDoubles(n);
+    lon = reader.readDoubles(n);
+    offsets = reader.readInts(n + 1);
+    targets = reader.readInts(m);
+    weights = reader.readInts(m);
+    edgeWays = reader.readInts(m);
+    wayIds = reader.readLongs(w);
+    wayOneWay = reader.readBooleans(w);
+    wayNameOffsets = reader.readInts(w + 1);
+    wayNameBytes = reader.readBytes(wayNameOffsets[w]);
+    wayHighways = reader.readBytes(w);
+    wayMaxSpeeds = reader.readInts(w);
+    wayRestricted = reader.readBooleans(w);
+    nodes = new AtomicReferenceArray<>(n);
+    computeUnitVectors();
+    computeReverseEdges();
+    computePotentialScale();
+  }
+
+  /**
+   * This constructor creates a copy of a graph with other weights. All
+   * arrays except the weights are shared.
+   */
+  private CompactGraph(CompactGraph graph, int[] weights) {
+    ids = graph.ids;
+    nodes = graph.nodes;
+    lat = graph.lat;
+    lon = graph.lon;
+    xyz = graph.xyz;
+    offsets = graph.offsets;
+    targets = graph.targets;
+    this.weights = weights;
+    revOffsets = graph.revOffsets;
+    revSources = graph.revSources;
+    revEdges = graph.revEdges;
+    edgeWays = graph.edgeWays;
+    wayIds = graph.wayIds;
+    wayOneWay = graph.wayOneWay;
+    wayNameBytes = graph.wayNameBytes;
+    wayNameOffsets = graph.wayNameOffsets;
+    wayHighways = graph.wayHighways;
+    wayMaxSpeeds = graph.wayMaxSpeeds;
+    wayRestricted = graph.wayRestricted;
+    boundFactor = graph.boundFactor;
+    boundDivisor = graph.boundDivisor;
+    version = versions.incrementAndGet();
+    computePotentialScale();
+  }
+
+  /**
+   * This method creates a copy of the graph with other weights, for
+   * example with closed edges. The graph itself is not changed, so
+   * searches that are running on it are not affected. The node and edge
+   * indices of the copy are the same.
+   *
+   * @param weights the weight of each edge, CLOSED for closed edges; the
+   * array must not be modified afterwards
+   *
+   * @return the copy
+   */
+  CompactGraph withWeights(int[] weights) {
+    if (weights.length != this.weights.length)
+      throw new IllegalArgumentException("There must be one weight per edge");
+    return new CompactGraph(this, weights);
+  }
+
+  /**
+   * This method creates a copy of the graph with weights in another unit
+   * than meters, for example travel times (see withWeights(int[])). The
+   * weight of every edge must be at least its length times 'boundFactor'
+   * divided by 'boundDivisor'.
+   *
+   * @param weights the weight of each edge, CLOSED for closed edges
+   * @param boundFactor the factor of the lower bound
+   * @param boundDivisor the divisor of the lower bound
+   *
+   * @return the copy
+   */
+  CompactGraph withWeights(int[] weights, int boundFactor, int boundDivisor) {
+    CompactGraph graph = withWeights(weights);
+    graph.boundFactor = boundFactor;
+    graph.boundDivisor = boundDivisor;
+    return graph;
+  }
+
+  /**
+   * This method creates a copy of the graph without its closed edges,
+   * for algorithms that look at the structure of the graph rather than
+   * at the weights. The node indices of the copy are the same.
+   *
+   * @return the copy, or the graph itself if no edge is closed
+   */
+  CompactGraph withoutClosedEdges() {
+    int m = 0;
+    for (int weight : weights)
+      if (weight != CLOSED)
+        m++;
+    if (m == weights.length)
+      return this;
+    int n = ids.length;
+    int[] openOffsets = new int[n + 1];
+    int[] openTargets = new int[m];
+    int[] openWeights = new int[m];
+    int[] openEdgeWays = new int[m];
+    int open = 0;
+    for (int node = 0; node < n; node++) {
+      openOffsets[node] = open;
+      for (int edge = offsets[node]; edge < offsets[node + 1]; edge++)
+        if (weights[edge] != CLOSED) {
+          openTargets[open] = targets[edge];
+          openWeights[open] = weights[edge];
+          openEdgeWays[open] = edgeWays[edge];
+          open++;
+        }
+    }
+    openOffsets[n] = open;
+    CompactGraph graph = new CompactGraph(ids, lat, lon, openOffsets, openTargets, openWeights, openEdgeWays, this);
+    graph.nodes = nodes;
+    return graph;
+  }
+
+  int[] copyWeights() {
+    return weights.clone();
+  }
+
+  boolean hasWeights(int[] weights) {
+    return Arrays.equals(this.weights, weights);
+  }
+
+  /**
+   * Returns the version of the weights. Graphs that share the node and
+   * edge arrays have the same weights if their versions are equal.
+   *
+   * @return the version
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * This method collects the edges of each way.
+   *
+   * @return the edge indices by way id
+   */
+  Map<Long, int[]> edgesByWay() {
+    int[] counts = new int[wayIds.length];
+    for (int way : edgeWays)
+      counts[way]++;
+    int[][] edges = new int[wayIds.length][];
+    for (int way = 0; way < wayIds.length; way++)
+      edges[way] = new int[counts[way]];
+    Arrays.fill(counts, 0);
+    for (int edge = 0; edge < edgeWays.length; edge++)
+      edges[edgeWays[edge]][counts[edgeWays[edge]]++] = edge;
+    Map<Long, int[]> edgesByWay = new HashMap<>();
+    for (int way = 0; way < wayIds.length; way++)
+      edgesByWay.merge(wayIds[way], edges[way], (a, b) -> {
+        int[] merged = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, merged, a.length, b.length);
+        return merged;
+      });
+    return edgesByWay;
+  }
+
+  /**
+   * This method writes the graph to a snapshot.
+   *
+   * @param out output stream
+   */
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(ids.length);
+    out.writeInt(targets.length);
+    out.writeInt(wayIds.length);
+    GraphSnapshot.writeLongs(out, ids);
+    GraphSnapshot.writeDoubles(out, lat);
+    GraphSnapshot.writeDoubles(out, lon);
+    GraphSnapshot.writeInts(out, offsets);
+    GraphSnapshot.writeInts(out, targets);
+    GraphSnapshot.writeInts(out, weights);
+    GraphSnapshot.writeInts(out, edgeWays);
+    GraphSnapshot.writeLongs(out, wayIds);
+    GraphSnapshot.writeBooleans(out, wayOneWay);
+    GraphSnapshot.writeInts(out, wayNameOffsets);
+    out.write(wayNameBytes);
+    out.write(wayHighways);
+    GraphSnapshot.writeInts(out, wayMaxSpeeds);
+    GraphSnapshot.writeBooleans(out, wayRestricted);
+  }
+
+  /**
+   * This method builds the reverse adjacency by sorting the edges by
+   * their target (counting sort). Every forward edge appears once, also
+   * the edges against one-way streets, whose weight is CLOSED; searches
+   * on the reverse edges skip them like the forward searches do.
+   */
+  private void computeReverseEdges() {
+    int n = ids.length;
+    revOffsets = new int[n + 1];
+    for (int edge = 0; edge < targets.length; edge++)
+      revOffsets[targets[edge] + 1]++;
+    for (int i = 0; i < n; i++)
+      revOffsets[i + 1] += revOffsets[i];
+    revSources = new int[targets.length];
+    revEdges = new int[targets.length];
+    int[] next = Arrays.copyOf(revOffsets, n);
+    for (int from = 0; from < n; from++)
+      for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+        int position = next[targets[edge]]++;
+        revSources[position] = from;
+        revEdges[position] = edge;
+      }
+  }
+
+  private void computeUnitVectors() {
+    xyz = new double[3 * ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      double φ = Math.toRadians(lat[i]);
+      double λ = Math.toRadians(lon[i]);
+      xyz[3 * i] = Math.cos(φ) * Math.cos(λ);
+      xyz[3 * i + 1] = Math.cos(φ) * Math.sin(λ);
+      xyz[3 * i + 2] = Math.sin(φ);
+    }
+  }
+
+  public int getNodeCount() {
+    return ids.length;
+  }
+
+  public int getEdgeCount() {
+    return targets.length;
+  }
+
+  /**
+   * This method translates a node id into a node index.
+   *
+   * @param id node id
+   *
+   * @return the node index or a negative number if there is no such node
+   */
+  public int indexOf(long id) {
+    return Arrays.binarySearch(ids, id);
+  }
+
+  public long getId(int node) {
+    return ids[node];
+  }
+
+  public OSMNode getNode(int node) {
+    OSMNode osmNode = nodes.get(node);
+    if (osmNode == null) {
+      nodes.compareAndSet(node, null, new OSMNode(ids[node], lat[node], lon[node]));
+      osmNode = nodes.get(node);
+    }
+    return osmNode;
+  }
+
+  public double getLat(int node) {
+    return lat[node];
+  }
+
+  public double getLon(int node) {
+    return lon[node];
+  }
+
+  /**
+   * Returns a coordinate of the position of a node as unit vector.
+   *
+   * @param node node index
+   * @param axis 0 (x), 1 (y) or 2 (z)
+   *
+   * @return the coordinate
+   */
+  public double getUnitVector(int node, int axis) {
+    return xyz[3 * node + axis];
+  }
+
+  /**
+   * This method calculates a lower bound for the distance between two
+   * nodes. It uses the straight line through the earth (the chord)
+   * instead of the great circle and therefore needs no trigonometric
+   * functions. The bound never exceeds MapPoint.distance().
+   *
+   * @param from first node index
+   * @param to second node index
+   *
+   * @return lower bound for the distance in meters
+   */
+  public int distanceLowerBound(int from, int to) {
+    return (int) chord(from, to);
+  }
+
+  private double chord(int from, int to) {
+    double dx = xyz[3 * from] - xyz[3 * to];
+    double dy = xyz[3 * from + 1] - xyz[3 * to + 1];
+    double dz = xyz[3 * from + 2] - xyz[3 * to + 2];
+    return MapPoint.EARTH_RADIUS * Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  /**
+   * This method computes the scale of the potential: the smallest ratio
+   * of the weight of an open edge to the chord between its nodes. It is
+   * reduced by a millionth, so that rounding errors in the chords cannot
+   * break the triangle inequality used in potential().
+   */
+  private void computePotentialScale() {
+    double scale = Double.POSITIVE_INFINITY;
+    for (int from = 0; from < ids.length; from++)
+      for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+        if (weights[edge] == CLOSED)
+          continue;
+        double chord = chord(from, targets[edge]);
+        if (chord > 0)
+          scale = Math.min(scale, weights[edge] / chord);
+      }
+    potentialScale = scale == Double.POSITIVE_INFINITY ? 0 : scale * (1 - 1e-6);
+  }
+
+  /**
+   * This method calculates a consistent potential for an A* search to a
+   * target: the chord to the target times the smallest ratio of weight to
+   * chord of any open edge. For an edge (u, v) of weight w, the triangle
+   * inequality of the chords gives
+   * potential(u, t) <= w + potential(v, t).
+   * Unlike the distance lower bound, this holds for edge lengths that are
+   * rounded down and for weights in other units, so the search settles
+   * each node at most once and finds shortest routes.
+   *
+   * @param from node index
+   * @param to target node index
+   *
+   * @return the potential, a lower bound for the weight of a path
+   */
+  public int potential(int from, int to) {
+    return (int) (potentialScale * chord(from, to));
+  }
+
+  /**
+   * This method converts the distance lower bound into the unit of the
+   * weights. In a graph of lengths, it is the distance lower bound; in a
+   * graph of travel times, the distance lower bound divided by the
+   * highest speed (see withWeights(int[], int, int)). As the lengths of
+   * the edges are rounded down, it is only an estimate for a path of many
+   * short edges; searches that need a consistent potential use
+   * potential().
+   *
+   * @param from first node index
+   * @param to second node index
+   *
+   * @return estimated lower bound for the weight
+   */
+  public int weightLowerBound(int from, int to) {
+    int bound = distanceLowerBound(from, to);
+    return boundDivisor == 1 ? bound : (int) ((long) bound * boundFactor / boundDivisor);
+  }
+
+  /**
+   * Returns the index of the first edge leaving a node.
+   *
+   * @param node node index
+   *
+   * @return first edge index
+   */
+  public int firstEdge(int node) {
+    return offsets[node];
+  }
+
+  /**
+   * Returns the index after the last edge leaving a node.
+   *
+   * @param node node index
+   *
+   * @return end of the edge range
+   */
+  public int endEdge(int node) {
+    return offsets[node + 1];
+  }
+
+  /**
+   * Returns the index of the first edge entering a node in the reverse
+   * adjacency.
+   *
+   * @param node node index
+   *
+   * @return first reverse edge index
+   */
+  public int firstReverseEdge(int node) {
+    return revOffsets[node];
+  }
+
+  /**
+   * Returns the index after the last edge entering a node in the
+   * reverse adjacency.
+   *
+   * @param node node index
+   *
+   * @return end of the reverse edge range
+   */
+  public int endReverseEdge(int node) {
+    return revOffsets[node + 1];
+  }
+
+  /**
+   * Returns the node a reverse edge comes from.
+   *
+   * @param reverseEdge reverse edge index
+   *
+   * @return source node index
+   */
+  public int getSource(int reverseEdge) {
+    return revSources[reverseEdge];
+  }
+
+  /**
+   * Returns the forward edge that corresponds to a reverse edge.
+   *
+   * @param reverseEdge reverse edge index
+   *
+   * @return forward edge index
+   */
+  public int getForwardEdge(int reverseEdge) {
+    return revEdges[reverseEdge];
+  }
+
+  public int getTarget(int edge) {
+    return targets[edge];
+  }
+
+  public int getWeight(int edge) {
+    return weights[edge];
+  }
+
+  int getWayIndex(int edge) {
+    return edgeWays[edge];
+  }
+
+  public long getWayId(int edge) {
+    return wayIds[edgeWays[edge]];
+  }
+
+  public boolean isOneWay(int edge) {
+    return wayOneWay[edgeWays[edge]];
+  }
+
+  public Highway getHighway(int edge) {
+    return HIGHWAYS[wayHighways[edgeWays[edge]]];
+  }
+
+  /**
+   * Returns the speed limit of the way an edge belongs to.
+   *
+   * @param edge edge index
+   *
+   * @return the speed limit in km/h, 0 if it is unknown
+   */
+  public int getMaxSpeed(int edge) {
+    return wayMaxSpeeds[edgeWays[edge]];
+  }
+
+  /**
+   * Returns whether the way an edge belongs to is closed to the public
+   * (see OSMWay.isRestricted()).
+   *
+   * @param edge edge index
+   *
+   * @return 'true' if the way is restricted
+   */
+  public boolean isRestricted(int edge) {
+    return wayRestricted[edgeWays[edge]];
+  }
+
+  /**
+   * Returns the name of the way an edge belongs to.
+   *
+   * @param edge edge index
+   *
+   * @return the name or 'null' if the way has no name
+   */
+  public String getWayName(int edge) {
+    int way = edgeWays[edge];
+    int length = wayNameOffsets[way + 1] - wayNameOffsets[way];
+    if (length == 0)
+      return null;
+    return new String(wayNameBytes, wayNameOffsets[way], length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * This method searches for an edge between two nodes.
+   *
+   * @param from start node index
+   * @param to target node index
+   *
+   * @return the edge index or -1 if there is no such edge
+   */
+  public int findEdge(int from, int to) {
+    int index = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+    return index >= 0 ? index : -1;
+  }
+}
@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the connected components of a graph. The strongly
+ * connected components are computed with Tarjan's algorithm, which numbers
+ * them in reverse topological order: if a node of component a can reach a
+ * node of another component b, then a > b. Together with the weakly
+ * connected components, this rules out most queries without a route in
+ * constant time.
+ *
+ * The nodes of the largest strongly connected component can all reach
+ * each other, so a query between two of them always has a route.
+ */
+class Components {
+  /**
+   * The strongly connected component of each node
+   */
+  private int[] strong;
+
+  /**
+   * The weakly connected component of each node
+   */
+  private int[] weak;
+
+  private int count;
+
+  private int largest;
+
+  private int largestSize;
+
+  /**
+   * This constructor computes the components of a graph. Closed edges
+   * are left out.
+   *
+   * @param graph the frozen graph or the graph of a profile
+   */
+  Components(CompactGraph graph) {
+    int n = graph.getNodeCount();
+    strong = new int[n];
+    computeStrong(graph);
+    weak = new int[n];
+    computeWeak(graph);
+
+    int[] sizes = new int[count];
+    for (int node = 0; node < n; node++)
+      sizes[strong[node]]++;
+    largest = -1;
+    for (int component = 0; component < count; component++)
+      if (largest < 0 || sizes[component] > largestSize) {
+        largest = component;
+        largestSize = sizes[component];
+      }
+  }
+
+  /**
+   * This method runs Tarjan's algorithm without recursion. The call stack
+   * is kept in arrays: for each node on it, the next edge to follow.
+   */
+  private void computeStrong(CompactGraph graph) {
+    int n = graph.getNodeCount();
+    int[] index = new int[n];
+    Arrays.fill(index, -1);
+    int[] low = new int[n];
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n];
+    int stackSize = 0;
+    int[] callNodes = new int[n];
+    int[] callEdges = new int[n];
+    int nextIndex = 0;
+
+    for (int root = 0; root < n; root++) {
+      if (index[root] >= 0)
+        continue;
+      int depth = 0;
+      callNodes[0] = root;
+      callEdges[0] = graph.firstEdge(root);
+      index[root] = low[root] = nextIndex++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      while (depth >= 0) {
+        int node = callNodes[depth];
+        if (callEdges[depth] < graph.endEdge(node)) {
+          int edge = callEdges[depth]++;
+          if (graph.getWeight(edge) == CompactGraph.CLOSED)
+            continue;
+          int child = graph.getTarget(edge);
+          if (index[child] < 0) {
+            depth++;
+            callNodes[depth] = child;
+            callEdges[depth] = graph.firstEdge(child);
+            index[child] = low[child] = nextIndex++;
+            stack[stackSize++] = child;
+            onStack[child] = true;
+          } else if (onStack[child])
+            low[node] = Math.min(low[node], index[child]);
+          continue;
+        }
+        /*
+         * All edges of the node have been followed; if it is the root of
+         * a component, the component is taken from the stack.
+         */
+        if (low[node] == index[node]) {
+          int member;
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+            strong[member] = count;
+          } while (member != node);
+          count++;
+        }
+        depth--;
+        if (depth >= 0)
+          low[callNodes[depth]] = Math.min(low[callNodes[depth]], low[node]);
+      }
+    }
+  }
+
+  /**
+   * This method computes the weakly connected components with a
+   * union-find structure over the edges.
+   */
+  private void computeWeak(CompactGraph graph) {
+    int n = graph.getNodeCount();
+    int[] parent = new int[n];
+    for (int node = 0; node < n; node++)
+      parent[node] = node;
+    for (int node = 0; node < n; node++)
+      for (int edge = graph.firstEdge(node); edge < graph.endEdge(node); edge++) {
+        if (graph.getWeight(edge) == CompactGraph.CLOSED)
+          continue;
+        int a = find(parent, node);
+        int b = find(parent, graph.getTarget(edge));
+        if (a != b)
+          parent[Math.max(a, b)] = Math.min(a, b);
+      }
+    for (int node = 0; node < n; node++)
+      weak[node] = find(parent, node);
+  }
+
+  private static int find(int[] parent, int node) {
+    while (parent[node] != node) {
+      parent[node] = parent[parent[node]];
+      node = parent[node];
+    }
+    return node;
+  }
+
+  /**
+   * Returns the number of strongly connected components.
+   *
+   * @return the number of components
+   */
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the number of nodes of the largest strongly connected
+   * component.
+   *
+   * @return the size of the largest component
+   */
+  int getLargestSize() {
+    return largestSize;
+  }
+
+  boolean inLargest(int node) {
+    return strong[node] == largest;
+  }
+
+  /**
+   * This method decides whether two nodes belong to the same strongly
+   * connected component, in which case there are routes between them in
+   * both directions.
+   *
+   * @param a first node index
+   * @param b second node index
+   *
+   * @return 'true' if the nodes are in the same component
+   */
+  boolean sameComponent(int a, int b) {
+    return strong[a] == strong[b];
+  }
+
+  /**
+   * This method rules out a route between two nodes in constant time.
+   * If it returns 'true', there may or may not be a route.
+   *
+   * @param from start node index
+   * @param to target node index
+   *
+   * @return 'false' if there is no route from 'from' to 'to'
+   */
+  boolean mayReach(int from, int to) {
+    return weak[from] == weak[to] && strong[from] >= strong[to];
+  }
+}
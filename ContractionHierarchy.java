@@ -0,0 +1,671 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import heap.IndexedIntHeap;
+
+/**
+ * This class implements contraction hierarchies. During preprocessing the
+ * nodes are contracted one after the other: a node is removed from the
+ * graph and shortcuts are added between its neighbors wherever the path
+ * through the node is the only shortest one. The order of contraction
+ * defines the rank of a node.
+ *
+ * A query runs Dijkstra's algorithm from both ends, but only along edges
+ * that lead to nodes of higher rank. Shortcuts remember the node they
+ * bypass, so that they can be unpacked into the original path.
+ */
+class ContractionHierarchy {
+  private static final int INFINITY = SearchContext.INFINITY;
+
+  /**
+   * The number of nodes a witness search may settle before it gives up.
+   * Giving up early only leads to additional shortcuts, so the searches
+   * that merely estimate the priority of a node give up sooner.
+   */
+  private static final int WITNESS_SETTLE_LIMIT = 500;
+
+  private static final int PRIORITY_SETTLE_LIMIT = 20;
+
+  private CompactGraph graph;
+
+  /**
+   * The position of each node in the contraction order
+   */
+  private int[] rank;
+
+  /*
+   * The upward edges: for node v, the edges v -> w to nodes w of higher
+   * rank are the entries upOffsets[v] up to upOffsets[v + 1] - 1. For
+   * shortcuts, the middle node is the bypassed node, -1 for original edges.
+   */
+  private int[] upOffsets;
+
+  private int[] upTargets;
+
+  private int[] upWeights;
+
+  private int[] upMiddles;
+
+  /*
+   * The downward edges, stored at their lower end: for node w, the edges
+   * u -> w from nodes u of higher rank.
+   */
+  private int[] downOffsets;
+
+  private int[] downSources;
+
+  private int[] downWeights;
+
+  private int[] downMiddles;
+
+  /**
+   * This class holds the edges of a node while the graph is contracted.
+   */
+  private static class EdgeList {
+    private int[] nodes = new int[4];
+    private int[] weights = new int[4];
+    private int[] middles = new int[4];
+    private int size;
+
+    int indexOf(int node) {
+      for (int i = 0; i < size; i++)
+        if (nodes[i] == node)
+          return i;
+      return -1;
+    }
+
+    /**
+     * Adds an edge or lowers the weight of an existing edge to the same node.
+     */
+    void set(int node, int weight, int middle) {
+      int i = indexOf(node);
+      if (i >= 0) {
+        if (weight < weights[i]) {
+          weights[i] = weight;
+          middles[i] = middle;
+        }
+        return;
+      }
+      if (size == nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * size);
+        weights = Arrays.copyOf(weights, 2 * size);
+        middles = Arrays.copyOf(middles, 2 * size);
+      }
+      nodes[size] = node;
+      weights[size] = weight;
+      middles[size] = middle;
+      size++;
+    }
+
+    void remove(int node) {
+      int i = indexOf(node);
+      if (i < 0)
+        return;
+      size--;
+      nodes[i] = nodes[size];
+      weights[i] = weights[size];
+      middles[i] = middles[size];
+    }
+  }
+
+  /**
+   * This class implements the local searches that look for witnesses,
+   * i.e. paths that are at most as long as the path through the node
+   * to be contracted. Each thread uses its own instance.
+   */
+  private static class WitnessSearch {
+    private int[] dist;
+    private int[] touched;
+    private int touchedCount;
+    private IndexedIntHeap heap;
+    private boolean[] isTarget;
+
+    WitnessSearch(int n) {
+      dist = new int[n];
+      Arrays.fill(dist, INFINITY);
+      touched = new int[n];
+      heap = new IndexedIntHeap(n);
+      isTarget = new boolean[n];
+    }
+
+    /**
+     * This method runs a search from a node that ignores the node to be
+     * contracted. It stops once all targets are settled, once the distance
+     * exceeds 'distMax' or once the settle limit is reached.
+     */
+    void run(EdgeList[] out, boolean[] excluded, int source, int avoid, EdgeList targets,
+        int distMax, int settleLimit) {
+      int targetsLeft = 0;
+      for (int j = 0; j < targets.size; j++)
+        if (!isTarget[targets.nodes[j]]) {
+          isTarget[targets.nodes[j]] = true;
+          targetsLeft++;
+        }
+      dist[source] = 0;
+      touched[touchedCount++] = source;
+      heap.insert(source, 0);
+      int settled = 0;
+      while (heap.getSize() > 0 && targetsLeft > 0) {
+        int u = heap.poll();
+        if (isTarget[u]) {
+          isTarget[u] = false;
+          targetsLeft--;
+        }
+        if (dist[u] > distMax || ++settled > settleLimit)
+          break;
+        EdgeList edges = out[u];
+        for (int i = 0; i < edges.size; i++) {
+          int x = edges.nodes[i];
+          if (x == avoid || excluded[x])
+            continue;
+          int distNew = dist[u] + edges.weights[i];
+          if (distNew < dist[x]) {
+            if (dist[x] == INFINITY)
+              touched[touchedCount++] = x;
+            dist[x] = distNew;
+            if (heap.contains(x))
+              heap.decreaseKey(x, distNew);
+            else
+              heap.insert(x, distNew);
+          }
+        }
+      }
+    }
+
+    void reset(EdgeList targets) {
+      for (int j = 0; j < targets.size; j++)
+        isTarget[targets.nodes[j]] = false;
+      for (int i = 0; i < touchedCount; i++)
+        dist[touched[i]] = INFINITY;
+      touchedCount = 0;
+      heap.clear();
+    }
+  }
+
+  /**
+   * This class holds the state of the preprocessing.
+   */
+  private static class Builder {
+    private int n;
+    private EdgeList[] out;
+    private EdgeList[] in;
+    private boolean[] contracted;
+    /*
+     * Nodes that are contracted in the current round; witness paths must
+     * not use them since they disappear at the same time.
+     */
+    private boolean[] inRound;
+    private int[] priority;
+    private int[] deletedNeighbors;
+    private ThreadLocal<WitnessSearch> witness;
+
+    Builder(CompactGraph graph) {
+      n = graph.getNodeCount();
+      out = new EdgeList[n];
+      in = new EdgeList[n];
+      for (int i = 0; i < n; i++) {
+        out[i] = new EdgeList();
+        in[i] = new EdgeList();
+      }
+      for (int from = 0; from < n; from++)
+        for (int edge = graph.firstEdge(from); edge < graph.endEdge(from); edge++) {
+          int to = graph.getTarget(edge);
+          if (to == from || graph.getWeight(edge) == CompactGraph.CLOSED)
+            continue;
+          out[from].set(to, graph.getWeight(edge), -1);
+          in[to].set(from, graph.getWeight(edge), -1);
+        }
+      contracted = new boolean[n];
+      inRound = new boolean[n];
+      priority = new int[n];
+      deletedNeighbors = new int[n];
+      witness = ThreadLocal.withInitial(() -> new WitnessSearch(n));
+    }
+
+    /**
+     * This method determines the shortcuts needed to contract a node.
+     *
+     * @param v the node
+     * @param shortcuts receives (from, to, weight) triples; may be 'null'
+     *
+     * @return the number of shortcuts
+     */
+    int shortcuts(int v, ArrayList<int[]> shortcuts) {
+      WitnessSearch search = witness.get();
+      EdgeList inV = in[v];
+      EdgeList outV = out[v];
+      int weightOutMax = 0;
+      for (int j = 0; j < outV.size; j++)
+        weightOutMax = Math.max(weightOutMax, outV.weights[j]);
+      int count = 0;
+      for (int i = 0; i < inV.size; i++) {
+        int u = inV.nodes[i];
+        search.run(out, inRound, u, v, outV, inV.weights[i] + weightOutMax,
+            shortcuts != null ? WITNESS_SETTLE_LIMIT : PRIORITY_SETTLE_LIMIT);
+        for (int j = 0; j < outV.size; j++) {
+          int w = outV.nodes[j];
+          if (w == u)
+            continue;
+          int weight = inV.weights[i] + outV.weights[j];
+          if (search.dist[w] > weight) {
+            count++;
+            if (shortcuts != null)
+              shortcuts.add(new int[] {u, w, weight});
+          }
+        }
+        search.reset(outV);
+      }
+      return count;
+    }
+
+    void updatePriority(int v) {
+      priority[v] = shortcuts(v, null) - in[v].size - out[v].size + deletedNeighbors[v];
+    }
+
+    /**
+     * A node is contracted in the current round if it has a smaller
+     * priority than all of its neighbors.
+     */
+    boolean isLocalMinimum(int v) {
+      return isSmallerThanAll(v, out[v]) && isSmallerThanAll(v, in[v]);
+    }
+
+    private boolean isSmallerThanAll(int v, EdgeList edges) {
+      for (int i = 0; i < edges.size; i++) {
+        int x = edges.nodes[i];
+        if (priority[x] < priority[v] || (priority[x] == priority[v] && x < v))
+          return false;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * This constructor runs the preprocessing in parallel on the common
+   * fork-join pool.
+   *
+   * @param graph the frozen graph
+   */
+  public ContractionHierarchy(CompactGraph graph) {
+    this(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * This constructor runs the preprocessing in parallel on a fork-join
+   * pool. In each round, the nodes whose priority is smaller than that of
+   * all their neighbors are contracted at the same time.
+   *
+   * @param graph the frozen graph
+   * @param pool the pool to run the preprocessing on
+   */
+  public ContractionHierarchy(CompactGraph graph, ForkJoinPool pool) {
+    this.graph = graph;
+    Builder builder = new Builder(graph);
+    int n = builder.n;
+    rank = new int[n];
+
+    Parallel.forEach(pool, IntStream.range(0, n), builder::updatePriority);
+
+    int remaining = n;
+    int nextRank = 0;
+    boolean[] marked = new boolean[n];
+    while (remaining > 0) {
+      int[] round = Parallel.submit(pool,
+          () -> IntStream.range(0, n).parallel()
+              .filter(v -> !builder.contracted[v] && builder.isLocalMinimum(v)).toArray());
+      for (int v : round)
+        builder.inRound[v] = true;
+
+      @SuppressWarnings({ "unchecked", "rawtypes" })
+      ArrayList<int[]>[] shortcuts = new ArrayList[round.length];
+      Parallel.forEach(pool, IntStream.range(0, round.length), i -> {
+        shortcuts[i] = new ArrayList<>();
+        builder.shortcuts(round[i], shortcuts[i]);
+      });
+
+      /*
+       * The contracted nodes are removed from the lists of their neighbors;
+       * their own lists keep the edges to nodes of higher rank.
+       */
+      ArrayList<Integer> neighbors = new ArrayList<>();
+      for (int i = 0; i < round.length; i++) {
+        int v = round[i];
+        rank[v] = nextRank++;
+        builder.contracted[v] = true;
+        builder.inRound[v] = false;
+        for (int j = 0; j < builder.out[v].size; j++) {
+          int w = builder.out[v].nodes[j];
+          builder.in[w].remove(v);
+          builder.deletedNeighbors[w]++;
+          if (!marked[w]) {
+            marked[w] = true;
+            neighbors.add(w);
+          }
+        }
+        for (int j = 0; j < builder.in[v].size; j++) {
+          int u = builder.in[v].nodes[j];
+          builder.out[u].remove(v);
+          builder.deletedNeighbors[u]++;
+          if (!marked[u]) {
+            marked[u] = true;
+            neighbors.add(u);
+          }
+        }
+        for (int[] shortcut : shortcuts[i]) {
+          builder.out[shortcut[0]].set(shortcut[1], shortcut[2], v);
+          builder.in[shortcut[1]].set(shortcut[0], shortcut[2], v);
+        }
+      }
+      remaining -= round.length;
+
+      for (int w : neighbors)
+        marked[w] = false;
+      Parallel.forEach(pool, neighbors.stream().mapToInt(Integer::intValue), builder::updatePriority);
+    }
+
+    upOffsets = new int[n + 1];
+    downOffsets = new int[n + 1];
+    for (int v = 0; v < n; v++) {
+      upOffsets[v + 1] = upOffsets[v] + builder.out[v].size;
+      downOffsets[v + 1] = downOffsets[v] + builder.in[v].size;
+    }
+    upTargets = new int[upOffsets[n]];
+    upWeights = new int[upOffsets[n]];
+    upMiddles = new int[upOffsets[n]];
+    downSources = new int[downOffsets[n]];
+    downWeights = new int[downOffsets[n]];
+    downMiddles = new int[downOffsets[n]];
+    for (int v = 0; v < n; v++) {
+      EdgeList up = builder.out[v];
+      System.arraycopy(up.nodes, 0, upTargets, upOffsets[v], up.size);
+      System.arraycopy(up.weights, 0, upWeights, upOffsets[v], up.size);
+      System.arraycopy(up.middles, 0, upMiddles, upOffsets[v], up.size);
+      EdgeList down = builder.in[v];
+      System.arraycopy(down.nodes, 0, downSources, downOffsets[v], down.size);
+      System.arraycopy(down.weights, 0, downWeights, downOffsets[v], down.size);
+      System.arraycopy(down.middles, 0, downMiddles, downOffsets[v], down.size);
+    }
+  }
+
+  public int getRank(int node) {
+    return rank[node];
+  }
+
+  /**
+   * Returns the number of edges in the hierarchy, including shortcuts.
+   *
+   * @return number of upward and downward edges
+   */
+  public int getEdgeCount() {
+    return upTargets.length + downSources.length;
+  }
+
+  /**
+   * This method searches for the shortest route between two nodes.
+   *
+   * @param context the search context to use
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   *
+   * @return the route and its length or 'null' if there is no route
+   */
+  public RoutingResult route(SearchContext context, int fromNode, int toNode) {
+    /*
+     * The forward search remembers the upward edge over which a node was
+     * reached, the backward search the downward edge.
+     */
+    SearchContext.SearchState forwardState = context.forward();
+    SearchContext.SearchState backwardState = context.backward();
+    IndexedIntHeap heapForward = forwardState.getHeap();
+    IndexedIntHeap heapBackward = backwardState.getHeap();
+
+    forwardState.setDist(fromNode, 0);
+    backwardState.setDist(toNode, 0);
+    forwardState.insert(fromNode, 0);
+    backwardState.insert(toNode, 0);
+    int best = fromNode == toNode ? 0 : INFINITY;
+    int meeting = fromNode == toNode ? fromNode : -1;
+
+    /*
+     * Both searches only go upwards, so neither can stop when they meet for
+     * the first time; each one runs until its smallest key exceeds the best
+     * path found.
+     */
+    while (true) {
+      boolean forward = heapForward.getSize() > 0 && heapForward.getKey(heapForward.peek()) < best;
+      boolean backward = heapBackward.getSize() > 0 && heapBackward.getKey(heapBackward.peek()) < best;
+      if (!forward && !backward)
+        break;
+      if (forward && backward)
+        forward = heapForward.getKey(heapForward.peek()) <= heapBackward.getKey(heapBackward.peek());
+
+      if (forward) {
+        int u = forwardState.poll();
+        forwardState.countRelaxations(upOffsets[u + 1] - upOffsets[u]);
+        int distU = forwardState.getDist(u);
+        for (int edge = upOffsets[u]; edge < upOffsets[u + 1]; edge++) {
+          int v = upTargets[edge];
+          int distNew = distU + upWeights[edge];
+          if (distNew < forwardState.getDist(v)) {
+            forwardState.setDist(v, distNew);
+            forwardState.setPrev(v, u);
+            forwardState.setEdge(v, edge);
+            forwardState.push(v, distNew);
+            int distBackward = backwardState.getDist(v);
+            if (distBackward != INFINITY && distNew + distBackward < best) {
+              best = distNew + distBackward;
+              meeting = v;
+            }
+          }
+        }
+      } else {
+        int w = backwardState.poll();
+        backwardState.countRelaxations(downOffsets[w + 1] - downOffsets[w]);
+        int distW = backwardState.getDist(w);
+        for (int edge = downOffsets[w]; edge < downOffsets[w + 1]; edge++) {
+          int u = downSources[edge];
+          int distNew = distW + downWeights[edge];
+          if (distNew < backwardState.getDist(u)) {
+            backwardState.setDist(u, distNew);
+            backwardState.setPrev(u, w);
+            backwardState.setEdge(u, edge);
+            backwardState.push(u, distNew);
+            int distForward = forwardState.getDist(u);
+            if (distForward != INFINITY && distNew + distForward < best) {
+              best = distNew + distForward;
+              meeting = u;
+            }
+          }
+        }
+      }
+    }
+
+    if (meeting < 0)
+      return null;
+
+    /*
+     * The edges of the path in the hierarchy are collected from the start
+     * node to the meeting node and from there to the target node, then
+     * the shortcuts among them are unpacked.
+     */
+    IntList path = new IntList();
+    path.add(fromNode);
+    int hops = 0;
+    for (int node = meeting; node != fromNode; node = forwardState.getPrev(node))
+      hops++;
+    int[] forwardNodes = new int[hops + 1];
+    int[] forwardMiddles = new int[hops + 1];
+    int node = meeting;
+    for (int i = hops; i > 0; i--) {
+      forwardNodes[i] = node;
+      forwardMiddles[i] = upMiddles[forwardState.getEdge(node)];
+      node = forwardState.getPrev(node);
+    }
+    forwardNodes[0] = fromNode;
+    for (int i = 1; i <= hops; i++)
+      unpack(forwardNodes[i - 1], forwardNodes[i], forwardMiddles[i], path);
+    for (node = meeting; node != toNode; node = backwardState.getPrev(node))
+      unpack(node, backwardState.getPrev(node), downMiddles[backwardState.getEdge(node)], path);
+
+    OSMNode[] pathArray = new OSMNode[path.size()];
+    for (int i = 0; i < pathArray.length; i++)
+      pathArray[i] = graph.getNode(path.get(i));
+    return new RoutingResult(pathArray, best);
+  }
+
+  /**
+   * This method computes the distances between many sources and targets
+   * with buckets. The upward search space of every target is searched
+   * backwards and each node it settles receives an entry (target,
+   * distance) in its bucket. Then the upward search space of every source
+   * is searched; the distance to a target is the minimum over the nodes
+   * of the source's search space of the distance to the node plus the
+   * distance in the node's bucket. Both phases run in parallel.
+   *
+   * @param sources indices of the source nodes
+   * @param targets indices of the target nodes
+   * @param pool the pool to run the searches on
+   * @param contexts the search contexts to use
+   *
+   * @return the distance from sources[i] to targets[j] at [i][j], -1 if
+   * there is no route
+   */
+  public int[][] distanceMatrix(int[] sources, int[] targets, ForkJoinPool pool, SearchContextPool contexts) {
+    int n = rank.length;
+    int[][] spaces = Parallel.submit(pool, () -> IntStream.range(0, targets.length).parallel()
+        .mapToObj(j -> upwardSearch(contexts, targets[j], false)).toArray(int[][]::new));
+
+    /*
+     * The buckets are stored like the edges: the entries of node v are
+     * at positions bucketOffsets[v] up to bucketOffsets[v + 1] - 1.
+     */
+    int[] bucketOffsets = new int[n + 1];
+    for (int[] space : spaces)
+      for (int i = 0; i < space.length; i += 2)
+        bucketOffsets[space[i] + 1]++;
+    for (int v = 0; v < n; v++)
+      bucketOffsets[v + 1] += bucketOffsets[v];
+    int[] bucketTargets = new int[bucketOffsets[n]];
+    int[] bucketDists = new int[bucketOffsets[n]];
+    int[] fill = Arrays.copyOf(bucketOffsets, n);
+    for (int j = 0; j < targets.length; j++)
+      for (int i = 0; i < spaces[j].length; i += 2) {
+        int position = fill[spaces[j][i]]++;
+        bucketTargets[position] = j;
+        bucketDists[position] = spaces[j][i + 1];
+      }
+
+    return Parallel.submit(pool, () -> IntStream.range(0, sources.length).parallel().mapToObj(i -> {
+      int[] row = new int[targets.length];
+      Arrays.fill(row, INFINITY);
+      int[] space = upwardSearch(contexts, sources[i], true);
+      for (int k = 0; k < space.length; k += 2) {
+        int v = space[k];
+        for (int position = bucketOffsets[v]; position < bucketOffsets[v + 1]; position++) {
+          int dist = space[k + 1] + bucketDists[position];
+          if (dist < row[bucketTargets[position]])
+            row[bucketTargets[position]] = dist;
+        }
+      }
+      for (int j = 0; j < row.length; j++)
+        if (row[j] == INFINITY)
+          row[j] = -1;
+      return row;
+    }).toArray(int[][]::new));
+  }
+
+  /**
+   * This method searches all nodes of higher rank that can be reached
+   * from a node or, backwards, that can reach it.
+   *
+   * @return the settled nodes and their distances, alternating
+   */
+  private int[] upwardSearch(SearchContextPool contexts, int source, boolean forward) {
+    SearchContext context = contexts.acquire();
+    try {
+      SearchContext.SearchState state = context.forward();
+      IndexedIntHeap heap = state.getHeap();
+      int[] space = new int[16];
+      int size = 0;
+      state.setDist(source, 0);
+      heap.insert(source, 0);
+      while (heap.getSize() > 0) {
+        int u = heap.poll();
+        int distU = state.getDist(u);
+        if (size == space.length)
+          space = Arrays.copyOf(space, 2 * size);
+        space[size++] = u;
+        space[size++] = distU;
+        int first = forward ? upOffsets[u] : downOffsets[u];
+        int end = forward ? upOffsets[u + 1] : downOffsets[u + 1];
+        for (int edge = first; edge < end; edge++) {
+          int v = forward ? upTargets[edge] : downSources[edge];
+          int distNew = distU + (forward ? upWeights[edge] : downWeights[edge]);
+          if (distNew < state.getDist(v)) {
+            state.setDist(v, distNew);
+            state.push(v, distNew);
+          }
+        }
+      }
+      return Arrays.copyOf(space, size);
+    } finally {
+      contexts.release(context);
+    }
+  }
+
+  /**
+   * This method appends the nodes of an edge after its start node to a
+   * path, replacing shortcuts by the edges they consist of.
+   *
+   * @param from start node of the edge
+   * @param to end node of the edge
+   * @param middle the bypassed node or -1 for an original edge
+   * @param path the path to append to
+   */
+  private void unpack(int from, int to, int middle, IntList path) {
+    /*
+     * The stack holds the edges still to be unpacked as triples (from,
+     * to, middle).
+     */
+    IntList stack = new IntList();
+    push(stack, from, to, middle);
+    while (!stack.isEmpty()) {
+      int edgeMiddle = stack.removeLast();
+      int edgeTo = stack.removeLast();
+      int edgeFrom = stack.removeLast();
+      if (edgeMiddle < 0) {
+        path.add(edgeTo);
+        continue;
+      }
+      /*
+       * A shortcut a -> b bypasses m, which was contracted before a and b.
+       * The edge m -> b is therefore an upward edge of m and a -> m is a
+       * downward edge stored at m.
+       */
+      int m = edgeMiddle;
+      push(stack, m, edgeTo, upMiddles[findUpEdge(m, edgeTo)]);
+      push(stack, edgeFrom, m, downMiddles[findDownEdge(m, edgeFrom)]);
+    }
+  }
+
+  private static void push(IntList stack, int from, int to, int middle) {
+    stack.add(from);
+    stack.add(to);
+    stack.add(middle);
+  }
+
+  private int findUpEdge(int from, int to) {
+    for (int edge = upOffsets[from]; edge < upOffsets[from + 1]; edge++)
+      if (upTargets[edge] == to)
+        return edge;
+    throw new RuntimeException("Invalid shortcut");
+  }
+
+  private int findDownEdge(int to, int from) {
+    for (int edge = downOffsets[to]; edge < downOffsets[to + 1]; edge++)
+      if (downSources[edge] == from)
+        return edge;
+    throw new RuntimeException("Invalid shortcut");
+  }
+}
@@ -0,0 +1,91 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import heap.IndexedIntHeap;
+
+/**
+ * This class computes tables of distances between many sources and many
+ * targets. Instead of one search per pair, it runs one search per source
+ * that stops as soon as all targets are settled. The searches of
+ * different sources run in parallel.
+ */
+class DistanceMatrix {
+  private static final int INFINITY = SearchContext.INFINITY;
+
+  private DistanceMatrix() {
+  }
+
+  /**
+   * This method computes the distances from every source to every target.
+   *
+   * @param graph the frozen graph
+   * @param components the components of the graph
+   * @param sources indices of the source nodes
+   * @param targets indices of the target nodes
+   * @param pool the pool to run the searches on
+   * @param contexts the search contexts to use
+   *
+   * @return the distance from sources[i] to targets[j] at [i][j], -1 if
+   * there is no route
+   */
+  static int[][] compute(CompactGraph graph, Components components, int[] sources, int[] targets,
+      ForkJoinPool pool, SearchContextPool contexts) {
+    /*
+     * A target may appear more than once; each node only needs to be
+     * settled once.
+     */
+    boolean[] isTarget = new boolean[graph.getNodeCount()];
+    int[] distinctTargets = Arrays.stream(targets).filter(target -> {
+      boolean first = !isTarget[target];
+      isTarget[target] = true;
+      return first;
+    }).toArray();
+    return Parallel.submit(pool, () -> IntStream.range(0, sources.length).parallel()
+        .mapToObj(i -> {
+          SearchContext context = contexts.acquire();
+          try {
+            /*
+             * Targets that the components rule out would never be
+             * settled, so the search does not wait for them.
+             */
+            int targetCount = (int) Arrays.stream(distinctTargets)
+                .filter(target -> components.mayReach(sources[i], target)).count();
+            return row(graph, context, sources[i], targets, isTarget, targetCount);
+          } finally {
+            contexts.release(context);
+          }
+        }).toArray(int[][]::new));
+  }
+
+  private static int[] row(CompactGraph graph, SearchContext context, int source, int[] targets,
+      boolean[] isTarget, int targetCount) {
+    SearchContext.SearchState state = context.forward();
+    IndexedIntHeap heap = state.getHeap();
+    state.setDist(source, 0);
+    heap.insert(source, 0);
+    int targetsLeft = targetCount;
+    while (heap.getSize() > 0 && targetsLeft > 0) {
+      int min = heap.poll();
+      if (isTarget[min])
+        targetsLeft--;
+      int distMin = state.getDist(min);
+      for (int edge = graph.firstEdge(min); edge < graph.endEdge(min); edge++) {
+        int weight = graph.getWeight(edge);
+        if (weight == CompactGraph.CLOSED)
+          continue;
+        int child = graph.getTarget(edge);
+        int distNew = distMin + weight;
+        if (distNew < state.getDist(child)) {
+          state.setDist(child, distNew);
+          state.push(child, distNew);
+        }
+      }
+    }
+    int[] row = new int[targets.length];
+    for (int j = 0; j < targets.length; j++) {
+      int dist = state.getDist(targets[j]);
+      row[j] = dist == INFINITY ? -1 : dist;
+    }
+    return row;
+  }
+}
@@ -2,6 +2,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 
+/**
+ * This class writes a route as GPX waypoints.
+ *
+ * @deprecated RouteWriter writes routes as GPX tracks, GeoJSON or encoded
+ * polylines and can write many routes into one file
+ */
+@Deprecated
 public class GPXWriter {
   private PrintWriter writer;
 
@@ -0,0 +1,166 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+/**
+ * This class writes a frozen MapGraph into a binary snapshot and loads
+ * it again. Loading maps the file into memory and copies the sections
+ * directly into the primitive arrays of the graph, so restarting from a
+ * snapshot avoids parsing the OSM file.
+ *
+ * A snapshot starts with a magic number and a format version, followed
+ * by the graph and the spatial index. All numbers are big-endian.
+ */
+public class GraphSnapshot {
+  private static final int MAGIC = 0x4E4F5647; // "NOVG"
+
+  /**
+   * The format version; it has to be increased whenever the layout changes.
+   */
+  static final int VERSION = 2;
+
+  /**
+   * This method writes a snapshot of a graph. The graph is frozen if it
+   * is not yet.
+   * 
+   * @param mapGraph the graph
+   * @param fileName name of the snapshot file
+   */
+  public static void write(MapGraph mapGraph, String fileName) throws IOException {
+    CompactGraph graph = mapGraph.frozen();
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      graph.write(out);
+      mapGraph.getNodeIndex().write(out);
+    }
+  }
+
+  /**
+   * This method loads a graph from a snapshot.
+   * 
+   * @param fileName name of the snapshot file
+   *
+   * @return the frozen graph
+   */
+  public static MapGraph read(String fileName) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+      Reader reader = new Reader(channel);
+      if (reader.readInt() != MAGIC)
+        throw new IOException("Not a graph snapshot: " + fileName);
+      int version = reader.readInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported snapshot version " + version);
+      CompactGraph graph = new CompactGraph(reader);
+      NodeIndex nodeIndex = new NodeIndex(graph, reader);
+      return new MapGraph(graph, nodeIndex);
+    }
+  }
+
+  static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    for (int value : values)
+      out.writeInt(value);
+  }
+
+  static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+    for (long value : values)
+      out.writeLong(value);
+  }
+
+  static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+    for (double value : values)
+      out.writeDouble(value);
+  }
+
+  static void writeBooleans(DataOutputStream out, boolean[] values) throws IOException {
+    for (boolean value : values)
+      out.writeBoolean(value);
+  }
+
+  /**
+   * This class reads the sections of a snapshot one after the other. Each
+   * section is mapped separately, so that the file may be larger than a
+   * single mapping.
+   */
+  static class Reader {
+    private FileChannel channel;
+
+    private long position;
+
+    Reader(FileChannel channel) {
+      this.channel = channel;
+      this.position = 0;
+    }
+
+    private ByteBuffer map(long bytes) throws IOException {
+      if (position + bytes > channel.size())
+        throw new IOException("Truncated snapshot");
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+      position += bytes;
+      return buffer;
+    }
+
+    int readInt() throws IOException {
+      return map(Integer.BYTES).getInt();
+    }
+
+    int[] readInts(int count) throws IOException {
+      int[] values = new int[count];
+      map((long) count * Integer.BYTES).asIntBuffer().get(values);
+      return values;
+    }
+
+    long[] readLongs(int count) throws IOException {
+      long[] values = new long[count];
+      map((long) count * Long.BYTES).asLongBuffer().get(values);
+      return values;
+    }
+
+    double[] readDoubles(int count) throws IOException {
+      double[] values = new double[count];
+      map((long) count * Double.BYTES).asDoubleBuffer().get(values);
+      return values;
+    }
+
+    byte[] readBytes(int count) throws IOException {
+      byte[] values = new byte[count];
+      map(count).get(values);
+      return values;
+    }
+
+    boolean[] readBooleans(int count) throws IOException {
+      byte[] bytes = readBytes(count);
+      boolean[] values = new boolean[count];
+      for (int i = 0; i < count; i++)
+        values[i] = bytes[i] != 0;
+      return values;
+    }
+  }
+
+  /**
+   * This method converts an OSM file into a snapshot.
+   * 
+   * @param args the OSM file and the snapshot file
+   */
+  public static void main(String[] args)
+      throws ParserConfigurationException, SAXException, IOException {
+    if (args.length != 2) {
+      System.out.println("Usage: GraphSnapshot <map.osm> <map.graph>");
+      return;
+    }
+    System.out.println("Reading OSM data...");
+    MapGraph g = MapParser.parseFile(args[0]);
+    System.out.println("Writing snapshot...");
+    write(g, args[1]);
+    System.out.println("Finished writing snapshot");
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * This enumeration lists the classes of OSM ways by their 'highway' tag.
+ * For each class, the usual speeds of a car, a bike and a pedestrian in
+ * km/h are stored; a speed of 0 means that the vehicle may not use ways
+ * of the class.
+ */
+public enum Highway {
+  MOTORWAY(120, 0, 0),
+  MOTORWAY_LINK(60, 0, 0),
+  TRUNK(100, 0, 0),
+  TRUNK_LINK(50, 0, 0),
+  PRIMARY(80, 18, 5),
+  PRIMARY_LINK(50, 18, 5),
+  SECONDARY(70, 18, 5),
+  SECONDARY_LINK(50, 18, 5),
+  TERTIARY(60, 18, 5),
+  TERTIARY_LINK(40, 18, 5),
+  UNCLASSIFIED(50, 18, 5),
+  RESIDENTIAL(40, 18, 5),
+  LIVING_STREET(10, 15, 5),
+  SERVICE(20, 15, 5),
+  ROAD(40, 15, 5),
+  TRACK(15, 12, 5),
+  PEDESTRIAN(0, 6, 5),
+  FOOTWAY(0, 6, 5),
+  PATH(0, 12, 5),
+  CYCLEWAY(0, 18, 5),
+  BRIDLEWAY(0, 0, 5),
+  STEPS(0, 0, 3),
+
+  /**
+   * Any other value of the tag
+   */
+  OTHER(0, 0, 0);
+
+  private int carSpeed;
+  private int bikeSpeed;
+  private int footSpeed;
+
+  private Highway(int carSpeed, int bikeSpeed, int footSpeed) {
+    this.carSpeed = carSpeed;
+    this.bikeSpeed = bikeSpeed;
+    this.footSpeed = footSpeed;
+  }
+
+  public int getCarSpeed() {
+    return carSpeed;
+  }
+
+  public int getBikeSpeed() {
+    return bikeSpeed;
+  }
+
+  public int getFootSpeed() {
+    return footSpeed;
+  }
+
+  /**
+   * This method finds the class of a value of the 'highway' tag.
+   *
+   * @param value the value of the tag, for example 'residential'
+   *
+   * @return the class, OTHER for unknown values
+   */
+  public static Highway of(String value) {
+    for (Highway highway : values())
+      if (highway != OTHER && highway.name().equalsIgnoreCase(value))
+        return highway;
+    return OTHER;
+  }
+}
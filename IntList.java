@@ -0,0 +1,44 @@
+import java.util.Arrays;
+
+/**
+ * This class implements a growing list of int values in a primitive
+ * array, so that adding a value boxes nothing. It can be used as a stack
+ * as well.
+ */
+class IntList {
+  private int[] values;
+
+  private int size;
+
+  public IntList() {
+    values = new int[16];
+    size = 0;
+  }
+
+  public void add(int value) {
+    if (size == values.length)
+      values = Arrays.copyOf(values, size + (size >> 1));
+    values[size++] = value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int get(int index) {
+    return values[index];
+  }
+
+  /**
+   * This method removes the last value.
+   *
+   * @return the value
+   */
+  public int removeLast() {
+    return values[--size];
+  }
+}
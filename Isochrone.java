@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the result of a bounded one-to-all search: the nodes
+ * that can be reached from a start node within a distance limit, in the
+ * order of their distance.
+ */
+public class Isochrone {
+  private CompactGraph graph;
+
+  /**
+   * The indices of the reached nodes
+   */
+  private int[] nodes;
+
+  /**
+   * The distance of each reached node from the start node
+   */
+  private int[] distances;
+
+  private int maxDistance;
+
+  public int getMaxDistance() {
+    return maxDistance;
+  }
+
+  Isochrone(CompactGraph graph, int[] nodes, int[] distances, int maxDistance) {
+    this.graph = graph;
+    this.nodes = nodes;
+    this.distances = distances;
+    this.maxDistance = maxDistance;
+  }
+
+  /**
+   * Returns the number of reached nodes, including the start node.
+   *
+   * @return number of nodes
+   */
+  public int getSize() {
+    return nodes.length;
+  }
+
+  public OSMNode getNode(int i) {
+    return graph.getNode(nodes[i]);
+  }
+
+  /**
+   * Returns the ids of the reached nodes.
+   *
+   * @return the ids, ordered by distance
+   */
+  public long[] getNodeIds() {
+    long[] ids = new long[nodes.length];
+    for (int i = 0; i < nodes.length; i++)
+      ids[i] = graph.getId(nodes[i]);
+    return ids;
+  }
+
+  /**
+   * Returns the distances of the reached nodes; the array must not be
+   * modified.
+   *
+   * @return the distances as weights of the profile (meters or tenths
+   * of a second), in the order of getNodeIds()
+   */
+  public int[] getDistances() {
+    return distances;
+  }
+
+  /**
+   * This method computes the outline of the reached area, the convex hull
+   * of the reached nodes. The hull is computed in a plane tangent to the
+   * earth at the first node, which is accurate for areas of a city's size.
+   *
+   * @return the corners of the outline in counterclockwise order
+   */
+  public MapPoint[] getOutline() {
+    int n = nodes.length;
+    if (n == 0)
+      return new MapPoint[0];
+    double scale = Math.cos(Math.toRadians(graph.getLat(nodes[0])));
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++)
+      order[i] = nodes[i];
+    Arrays.sort(order, (a, b) -> {
+      int c = Double.compare(graph.getLon(a), graph.getLon(b));
+      return c != 0 ? c : Double.compare(graph.getLat(a), graph.getLat(b));
+    });
+
+    /*
+     * Andrew's monotone chain: the lower and the upper hull are built from
+     * the points sorted by x, removing points that do not turn left.
+     */
+    int[] hull = new int[2 * n];
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      while (size >= 2 && cross(hull[size - 2], hull[size - 1], order[i], scale) <= 0)
+        size--;
+      hull[size++] = order[i];
+    }
+    for (int i = n - 2, lower = size + 1; i >= 0; i--) {
+      while (size >= lower && cross(hull[size - 2], hull[size - 1], order[i], scale) <= 0)
+        size--;
+      hull[size++] = order[i];
+    }
+    if (n > 1)
+      size--;
+
+    MapPoint[] outline = new MapPoint[size];
+    for (int i = 0; i < size; i++)
+      outline[i] = new MapPoint(graph.getLat(hull[i]), graph.getLon(hull[i]));
+    return outline;
+  }
+
+  private double cross(int o, int a, int b, double scale) {
+    double ax = (graph.getLon(a) - graph.getLon(o)) * scale;
+    double ay = graph.getLat(a) - graph.getLat(o);
+    double bx = (graph.getLon(b) - graph.getLon(o)) * scale;
+    double by = graph.getLat(b) - graph.getLat(o);
+    return ax * by - ay * bx;
+  }
+
+  /**
+   * This method runs a search from a node that stops at a distance limit.
+   *
+   * @param graph the frozen graph or the graph of a profile
+   * @param context the search context to use
+   * @param fromNode index of the start node
+   * @param maxDistance the distance limit as a weight of the profile
+   * (meters or tenths of a second)
+   *
+   * @return the reached nodes
+   */
+  static Isochrone search(CompactGraph graph, SearchContext context, int fromNode, int maxDistance) {
+    SearchContext.SearchState state = context.forward();
+    int[] nodes = new int[64];
+    int[] distances = new int[64];
+    int size = 0;
+    state.setDist(fromNode, 0);
+    state.insert(fromNode, 0);
+    while (state.getHeap().getSize() > 0) {
+      int min = state.poll();
+      int distMin = state.getDist(min);
+      if (size == nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * size);
+        distances = Arrays.copyOf(distances, 2 * size);
+      }
+      nodes[size] = min;
+      distances[size++] = distMin;
+      state.countRelaxations(graph.endEdge(min) - graph.firstEdge(min));
+      for (int edge = graph.firstEdge(min); edge < graph.endEdge(min); edge++) {
+        int weight = graph.getWeight(edge);
+        if (weight == CompactGraph.CLOSED)
+          continue;
+        int child = graph.getTarget(edge);
+        int distNew = distMin + weight;
+        /*
+         * Nodes beyond the limit are not even put into the queue.
+         */
+        if (distNew <= maxDistance && distNew < state.getDist(child)) {
+          state.setDist(child, distNew);
+          state.push(child, distNew);
+        }
+      }
+    }
+    return new Isochrone(graph, Arrays.copyOf(nodes, size), Arrays.copyOf(distances, size), maxDistance);
+  }
+}
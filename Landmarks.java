@@ -0,0 +1,210 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import heap.IndexedIntHeap;
+
+/**
+ * This class implements the landmark lower bounds of the ALT algorithm
+ * (A*, landmarks and the triangle inequality). For a few landmark nodes L
+ * the distances from L to every node and from every node to L are
+ * precomputed. By the triangle inequality,
+ *
+ *   d(v, t) >= d(L, t) - d(L, v)   and   d(v, t) >= d(v, L) - d(t, L),
+ *
+ * which gives a lower bound that, unlike the air distance, takes detours
+ * around rivers or along one-way streets into account.
+ */
+class Landmarks {
+  private static final int INFINITY = Integer.MAX_VALUE;
+
+  /**
+   * The number of landmarks used by a single query
+   */
+  private static final int ACTIVE = 4;
+
+  private CompactGraph graph;
+
+  private int[] landmarks;
+
+  /**
+   * The distances from the landmarks to the nodes and from the nodes to
+   * the landmarks; the distances of node v are stored at positions
+   * v * count to v * count + count - 1.
+   */
+  private int[] from;
+  private int[] to;
+
+  /**
+   * This constructor selects the landmarks and computes their distances
+   * in parallel on the common fork-join pool.
+   *
+   * @param graph the frozen graph
+   * @param count the number of landmarks
+   */
+  public Landmarks(CompactGraph graph, int count) {
+    this(graph, count, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * This constructor selects the landmarks and computes their distances
+   * in parallel on a fork-join pool, one search per landmark and direction.
+   *
+   * @param graph the frozen graph
+   * @param count the number of landmarks
+   * @param pool the pool to run the preprocessing on
+   */
+  public Landmarks(CompactGraph graph, int count, ForkJoinPool pool) {
+    if (count < 1)
+      throw new IllegalArgumentException("At least one landmark is needed");
+    this.graph = graph;
+    landmarks = select(graph, count);
+    int k = landmarks.length;
+    int n = graph.getNodeCount();
+    int[][] distances = Parallel.submit(pool, () -> IntStream.range(0, 2 * k).parallel()
+        .mapToObj(i -> distances(graph, landmarks[i % k], i >= k)).toArray(int[][]::new));
+    from = new int[n * k];
+    to = new int[n * k];
+    for (int i = 0; i < k; i++)
+      for (int v = 0; v < n; v++) {
+        from[v * k + i] = distances[i][v];
+        to[v * k + i] = distances[k + i][v];
+      }
+  }
+
+  /**
+   * This method selects the landmarks. Around the center of the graph, the
+   * plane is divided into 'count' sectors of equal angle, and in each sector
+   * the node farthest from the center becomes a landmark. Landmarks at the
+   * border of the map give good bounds for most pairs of nodes.
+   */
+  private static int[] select(CompactGraph graph, int count) {
+    int n = graph.getNodeCount();
+    double latCenter = 0;
+    double lonCenter = 0;
+    for (int v = 0; v < n; v++) {
+      latCenter += graph.getLat(v) / n;
+      lonCenter += graph.getLon(v) / n;
+    }
+    double scale = Math.cos(Math.toRadians(latCenter));
+    int[] best = new int[count];
+    double[] radiusBest = new double[count];
+    Arrays.fill(best, -1);
+    for (int v = 0; v < n; v++) {
+      double y = graph.getLat(v) - latCenter;
+      double x = (graph.getLon(v) - lonCenter) * scale;
+      double angle = Math.atan2(y, x) + Math.PI;
+      int sector = Math.min((int) (angle / (2 * Math.PI) * count), count - 1);
+      double radius = x * x + y * y;
+      if (best[sector] < 0 || radius > radiusBest[sector]) {
+        best[sector] = v;
+        radiusBest[sector] = radius;
+      }
+    }
+    /*
+     * Sectors without any node yield no landmark.
+     */
+    return Arrays.stream(best).filter(v -> v >= 0).toArray();
+  }
+
+  /**
+   * This method computes the distances from a node to all nodes or, on the
+   * reverse edges, from all nodes to the node.
+   */
+  private static int[] distances(CompactGraph graph, int source, boolean reverse) {
+    int n = graph.getNodeCount();
+    int[] dist = new int[n];
+    Arrays.fill(dist, INFINITY);
+    IndexedIntHeap heap = new IndexedIntHeap(n);
+    dist[source] = 0;
+    heap.insert(source, 0);
+    while (heap.getSize() > 0) {
+      int min = heap.poll();
+      int first = reverse ? graph.firstReverseEdge(min) : graph.firstEdge(min);
+      int end = reverse ? graph.endReverseEdge(min) : graph.endEdge(min);
+      for (int edge = first; edge < end; edge++) {
+        int other = reverse ? graph.getSource(edge) : graph.getTarget(edge);
+        int weight = graph.getWeight(reverse ? graph.getForwardEdge(edge) : edge);
+        if (weight == CompactGraph.CLOSED)
+          continue;
+        int distNew = dist[min] + weight;
+        if (distNew < dist[other]) {
+          dist[other] = distNew;
+          if (heap.contains(other))
+            heap.decreaseKey(other, distNew);
+          else
+            heap.insert(other, distNew);
+        }
+      }
+    }
+    return dist;
+  }
+
+  public int getCount() {
+    return landmarks.length;
+  }
+
+  public int getLandmark(int i) {
+    return landmarks[i];
+  }
+
+  /**
+   * This method computes the lower bound for the distance between two
+   * nodes given by a single landmark; terms that involve an unreachable
+   * node do not give a bound.
+   */
+  private int bound(int i, int v, int t) {
+    int k = landmarks.length;
+    int bound = 0;
+    int fromV = from[v * k + i];
+    int fromT = from[t * k + i];
+    if (fromV != INFINITY && fromT != INFINITY)
+      bound = Math.max(bound, fromT - fromV);
+    int toV = to[v * k + i];
+    int toT = to[t * k + i];
+    if (toV != INFINITY && toT != INFINITY)
+      bound = Math.max(bound, toV - toT);
+    return bound;
+  }
+
+  /**
+   * This method creates the potential for a search to a target node. Of
+   * all landmarks, only the few that give the best bound for the distance
+   * between the start and the target node are used.
+   *
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   *
+   * @return a consistent lower bound for the distance to 'toNode'
+   */
+  public IntUnaryOperator potential(int fromNode, int toNode) {
+    int k = landmarks.length;
+    /*
+     * The landmarks with the largest bounds are selected by insertion into
+     * a small array; of landmarks with the same bound, the first is kept.
+     */
+    int count = Math.min(ACTIVE, k);
+    int[] active = new int[count];
+    int[] bounds = new int[count];
+    int size = 0;
+    for (int i = 0; i < k; i++) {
+      int bound = bound(i, fromNode, toNode);
+      if (size == count && bounds[count - 1] >= bound)
+        continue;
+      int j = size < count ? size++ : count - 1;
+      while (j > 0 && bounds[j - 1] < bound) {
+        bounds[j] = bounds[j - 1];
+        active[j] = active[j - 1];
+        j--;
+      }
+      bounds[j] = bound;
+      active[j] = i;
+    }
+    return v -> {
+      int bound = 0;
+      for (int i : active)
+        bound = Math.max(bound, bound(i, v, toNode));
+      return bound;
+    };
+  }
+}
@@ -0,0 +1,34 @@
+import java.util.Arrays;
+
+/**
+ * This class implements a growing list of long values in a primitive
+ * array, so that adding a value boxes nothing.
+ */
+class LongList {
+  private long[] values;
+
+  private int size;
+
+  public LongList() {
+    values = new long[16];
+    size = 0;
+  }
+
+  public void add(long value) {
+    if (size == values.length)
+      values = Arrays.copyOf(values, size + (size >> 1));
+    values[size++] = value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long get(int index) {
+    return values[index];
+  }
+
+  public long[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
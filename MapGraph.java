@@ -1,30 +1,223 @@
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.function.Function;
-import heap.BinomialHeap;
+import heap.IndexedIntHeap;
 
 /**
  * This class represents the graphs of
  * OpenStreetMap streets and pathways.
+ *
+ * Ways and the coordinates of their nodes are collected in lists and
+ * primitive arrays while the graph is being built. Before the first query
+ * the graph is frozen into a CompactGraph and the lists are released.
+ * Building a graph is not thread-safe; once it is frozen, it can be
+ * queried from many threads at the same time.
  */
 public class MapGraph {
-  private Map<Long, OSMNode> nodes;
-  private Map<Long, Set<MapEdge>> edges;
+  private List<OSMWay> ways;
+
+  /**
+   * The ids of the nodes of the ways added since the last lookup
+   */
+  private LongList wayNodeIds;
+
+  /**
+   * The ids of the nodes of the other ways, in sorted runs without
+   * duplicates. Each run is more than twice as long as the next one, so
+   * there are only logarithmically many runs and every id is merged only
+   * a logarithmic number of times (see referenced()).
+   */
+  private List<long[]> referencedRuns;
+
+  private NodeStore nodes;
+
+  private volatile CompactGraph graph;
+
+  private NodeIndex nodeIndex;
+
+  /**
+   * The graph and the components of each profile, by ordinal
+   */
+  private CompactGraph[] profileGraphs;
+
+  private Components[] profileComponents;
+
+  private volatile RoutingEngine routingEngine;
+
+  private volatile ContractionHierarchy contractionHierarchy;
+
+  private volatile Landmarks landmarks;
+
+  private volatile ChainGraph chainGraph;
 
   public MapGraph() {
-    this.nodes = new TreeMap<>();
-    this.edges = new HashMap<>();
+    this.ways = new ArrayList<>();
+    this.wayNodeIds = new LongList();
+    this.referencedRuns = new ArrayList<>();
+    this.nodes = new NodeStore();
+  }
+
+  /**
+   * This constructor wraps a graph that has already been frozen, for
+   * example one that has been loaded from a snapshot.
+   *
+   * @param graph the frozen graph
+   * @param nodeIndex the spatial index of the graph
+   */
+  MapGraph(CompactGraph graph, NodeIndex nodeIndex) {
+    this.nodeIndex = nodeIndex;
+    prepareProfiles(graph);
+    this.graph = graph;
+  }
+
+  /**
+   * This method freezes the graph. Afterwards, no more nodes or ways
+   * can be added. Calling this method more than once has no effect.
+   */
+  public synchronized void freeze() {
+    if (graph != null)
+      return;
+    flushWayNodeIds();
+    long[] referencedIds = new long[0];
+    for (long[] run : referencedRuns)
+      referencedIds = merge(referencedIds, run);
+    CompactGraph graph = new CompactGraph(referencedIds, nodes, ways);
+    nodeIndex = new NodeIndex(graph);
+    prepareProfiles(graph);
+    ways = null;
+    wayNodeIds = null;
+    referencedRuns = null;
+    nodes = null;
+    this.graph = graph;
+  }
+
+  /**
+   * This method computes the weights and the components of all profiles.
+   */
+  private void prepareProfiles(CompactGraph graph) {
+    Profile[] profiles = Profile.values();
+    profileGraphs = new CompactGraph[profiles.length];
+    profileComponents = new Components[profiles.length];
+    for (Profile profile : profiles) {
+      profileGraphs[profile.ordinal()] = profile.weights(graph);
+      profileComponents[profile.ordinal()] = new Components(profileGraphs[profile.ordinal()]);
+    }
+  }
+
+  CompactGraph frozen() {
+    CompactGraph graph = this.graph;
+    if (graph == null) {
+      freeze();
+      graph = this.graph;
+    }
+    return graph;
+  }
+
+  /**
+   * This method returns the engine that answers the queries on this
+   * graph; it freezes the graph.
+   *
+   * @return the routing engine
+   */
+  public RoutingEngine getRoutingEngine() {
+    RoutingEngine routingEngine = this.routingEngine;
+    if (routingEngine == null)
+      synchronized (this) {
+        if (this.routingEngine == null)
+          this.routingEngine = new RoutingEngine(this);
+        routingEngine = this.routingEngine;
+      }
+    return routingEngine;
+  }
+
+  ContractionHierarchy getContractionHierarchy() {
+    return contractionHierarchy;
+  }
+
+  Landmarks getLandmarks() {
+    return landmarks;
+  }
+
+  ChainGraph getChainGraph() {
+    return chainGraph;
+  }
+
+  /**
+   * This method returns the graph with the weights of a profile; it
+   * freezes the graph.
+   *
+   * @param profile the profile
+   *
+   * @return the graph of the profile, which shares all arrays except the
+   * weights with the frozen graph
+   */
+  CompactGraph frozen(Profile profile) {
+    freeze();
+    return profileGraphs[profile.ordinal()];
+  }
+
+  NodeIndex getNodeIndex() {
+    freeze();
+    return nodeIndex;
+  }
+
+  Components getComponents() {
+    return getComponents(Profile.DEFAULT);
+  }
+
+  Components getComponents(Profile profile) {
+    freeze();
+    return profileComponents[profile.ordinal()];
+  }
+
+  private void checkNotFrozen() {
+    if (graph != null)
+      throw new RuntimeException("The graph is frozen");
   }
 
   /**
-   * Evaluates if there is an edge between two nodes.
+   * This method builds the contraction hierarchy used by
+   * SearchMode.CONTRACTION_HIERARCHY. The preprocessing runs in
+   * parallel on the common fork-join pool; it freezes the graph.
+   */
+  public void prepareContractionHierarchy() {
+    contractionHierarchy = new ContractionHierarchy(frozen());
+  }
+
+  /**
+   * This method selects 16 landmarks and computes their distances for
+   * SearchMode.ALT.
+   */
+  public void prepareLandmarks() {
+    prepareLandmarks(16);
+  }
+
+  /**
+   * This method selects landmarks and computes their distances for
+   * SearchMode.ALT. The distances are computed in parallel on the common
+   * fork-join pool; it freezes the graph.
+   *
+   * @param count the number of landmarks
+   */
+  public void prepareLandmarks(int count) {
+    landmarks = new Landmarks(frozen(), count);
+  }
+
+  /**
+   * This method compresses the chains of nodes of degree 2 into single
+   * edges between junctions (see ChainGraph). Afterwards, SearchMode.ASTAR
+   * and SearchMode.BIDIRECTIONAL search the junctions only and expand the
+   * route found with the nodes inside the chains; it freezes the graph.
+   */
+  public void prepareChainCompression() {
+    chainGraph = new ChainGraph(frozen());
+  }
+
+  /**
+   * Evaluates if there is an edge between two nodes that may be used in
+   * its direction.
    * 
    * @param from start node
    * @param to target node
@@ -32,15 +225,66 @@ public class MapGraph {
    * @return 'true' if there is an edge, 'false' if not
    */
   boolean hasEdge(OSMNode from, OSMNode to) {
-    Set<MapEdge> fromEdges = edges.get(from.getId());
-    if (fromEdges == null)
-      return false;
-    else {
-      for (MapEdge edge : fromEdges)
-        if (edge.getTo() == to.getId())
+    if (graph != null) {
+      int fromIndex = graph.indexOf(from.getId());
+      int toIndex = graph.indexOf(to.getId());
+      int edge = fromIndex >= 0 && toIndex >= 0 ? graph.findEdge(fromIndex, toIndex) : -1;
+      return edge >= 0 && graph.getWeight(edge) != CompactGraph.CLOSED;
+    }
+    for (OSMWay way : ways) {
+      long[] nodesWay = way.getNodes();
+      for (int i = 0; i < nodesWay.length - 1; i++) {
+        if (nodesWay[i] == from.getId() && nodesWay[i + 1] == to.getId() && !(way.isOneWay() && way.isReversed()))
+          return true;
+        if (nodesWay[i + 1] == from.getId() && nodesWay[i] == to.getId() && !(way.isOneWay() && !way.isReversed()))
           return true;
-      return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * This method decides whether a node belongs to one of the ways added
+   * so far.
+   */
+  private boolean referenced(long id) {
+    flushWayNodeIds();
+    for (long[] run : referencedRuns)
+      if (Arrays.binarySearch(run, id) >= 0)
+        return true;
+    return false;
+  }
+
+  /**
+   * This method sorts the ids of the ways added since the last lookup
+   * into a new run and merges it with the shorter runs.
+   */
+  private void flushWayNodeIds() {
+    if (wayNodeIds.size() == 0)
+      return;
+    long[] run = wayNodeIds.toArray();
+    wayNodeIds = new LongList();
+    Arrays.sort(run);
+    run = merge(run, new long[0]);
+    while (!referencedRuns.isEmpty() && referencedRuns.get(referencedRuns.size() - 1).length <= 2 * run.length)
+      run = merge(referencedRuns.remove(referencedRuns.size() - 1), run);
+    referencedRuns.add(run);
+  }
+
+  /**
+   * This method merges two sorted arrays into one without duplicates.
+   */
+  private static long[] merge(long[] a, long[] b) {
+    long[] merged = new long[a.length + b.length];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length || j < b.length) {
+      long id = j == b.length || i < a.length && a[i] <= b[j] ? a[i++] : b[j++];
+      if (count == 0 || merged[count - 1] != id)
+        merged[count++] = id;
     }
+    return Arrays.copyOf(merged, count);
   }
 
   /**
@@ -50,8 +294,22 @@ public class MapGraph {
    * @param node to be added
    */
   public void addNode(OSMNode node) {
-    if (edges.containsKey(node.getId()))
-      this.nodes.put(node.getId(), node);
+    addNode(node.getId(), node.getLocation().getLat(), node.getLocation().getLon());
+  }
+
+  /**
+   * This method adds a node to the graph without creating an OSMNode.
+   * Only nodes that already have an edge are included; if a node is added
+   * twice, the coordinates added last are used.
+   *
+   * @param id id of the node
+   * @param lat latitude
+   * @param lon longitude
+   */
+  void addNode(long id, double lat, double lon) {
+    checkNotFrozen();
+    if (referenced(id))
+      nodes.add(id, lat, lon);
   }
 
   /**
@@ -60,105 +318,166 @@ public class MapGraph {
    * @param way to be included
    */
   public void addWay(OSMWay way) {
-    Long[] nodesWay = way.getNodes();
-    BiConsumer<Integer, Integer> add = (from, to) -> {
-
-      Function<Integer, Set<MapEdge>> getEdges = nodeId -> {
-        Set<MapEdge> edgesNode = edges.get(nodesWay[nodeId]);
-        if (edgesNode == null) {
-          edgesNode = new TreeSet<>();
-          edges.put(nodesWay[nodeId], edgesNode);
-        }
-        return edgesNode;
-      };
-      getEdges.apply(to);
-
-      MapEdge edge = new MapEdge(nodesWay[to], way);
-      getEdges.apply(from).add(edge);
-    };
-    for (int i = 0; i < nodesWay.length - 1; i++) {
-      add.accept(i, i + 1);
-      if (!way.isOneWay())
-        add.accept(i + 1, i);
-    }
+    checkNotFrozen();
+    long[] nodesWay = way.getNodes();
+    /*
+     * The edges are created when the graph is frozen (see CompactGraph);
+     * a way with a single node has none.
+     */
+    if (nodesWay.length < 2)
+      return;
+    ways.add(way);
+    for (long id : nodesWay)
+      wayNodeIds.add(id);
   }
 
   /**
    * This method finds the nearest OpenStreetMap node
    * to a given map point. If there are several nodes
    * with the same smallest distance, the node with the
-   * smallest id is returned.
+   * smallest id is returned. The nodes are looked up in
+   * a spatial index that is built when the graph is frozen.
    * 
    * @param p map point
    *
    * @return OpenStreetMap node
    */
   public OSMNode closest(MapPoint p) {
-    Optional<OSMNode> nodeMin = Optional.empty();
-    int distMin = Integer.MAX_VALUE;
-    for (OSMNode node : nodes.values()) {
-      int distNode = node.getLocation().distance(p);
-      if (distNode < distMin) {
-        distMin = distNode;
-        nodeMin = Optional.of(node);
-      } else if (distNode == distMin && node.getId() < nodeMin.get().getId())
-        nodeMin = Optional.of(node);
-    }
-    return nodeMin.get();
+    return frozen().getNode(snap(p));
+  }
+
+  /**
+   * This method finds the index of the node closest to a map point.
+   *
+   * @param p map point
+   *
+   * @return index of the node in the frozen graph
+   */
+  int snap(MapPoint p) {
+    int nodeMin = getNodeIndex().closest(p.getLat(), p.getLon());
+    if (nodeMin < 0)
+      throw new RuntimeException("Empty graph");
+    return nodeMin;
+  }
+
+  /**
+   * This method finds the index of the node closest to a map point among
+   * the nodes of the largest strongly connected component. All of these
+   * nodes can reach each other.
+   *
+   * @param p map point
+   *
+   * @return index of the node in the frozen graph
+   */
+  int snapToLargestComponent(MapPoint p) {
+    return snapToLargestComponent(p, Profile.DEFAULT);
+  }
+
+  /**
+   * This method finds the index of the node closest to a map point among
+   * the nodes of the largest strongly connected component of a profile.
+   *
+   * @param p map point
+   * @param profile the profile
+   *
+   * @return index of the node in the frozen graph
+   */
+  int snapToLargestComponent(MapPoint p, Profile profile) {
+    Components components = getComponents(profile);
+    int nodeMin = getNodeIndex().closest(p.getLat(), p.getLon(), components::inLargest);
+    if (nodeMin < 0)
+      throw new RuntimeException("Empty graph");
+    return nodeMin;
   }
 
   public RoutingResult route(MapPoint from, MapPoint to) {
-    OSMNode fromNode = closest(from);
-    OSMNode toNode = closest(to);
-    return sssp_dijkstra(fromNode, toNode);
+    return route(from, to, SearchMode.DIJKSTRA);
   }
 
   /**
-   * This method searches for the shortest route through the OpenStreetMap
-   * street/pathway network for two map points.
+   * This method searches for the shortest route between the nodes
+   * closest to two map points (see RoutingEngine.setComponentSnapping()).
    * 
-   * @param fromNode start map point
-   * @param toNode target map point
+   * @param from start map point
+   * @param to target map point
+   * @param mode the algorithm to use
    * 
-   * @return a possible route to the destination and its length; the length
-   * of the route refers only to the length in the graph, the distance from
-   * 'from' to the start node or 'to' to the end node is neglected.
+   * @return the route and its length or 'null' if there is no route
    */
-  private RoutingResult sssp_dijkstra(OSMNode fromNode, OSMNode toNode) {
-    /*
-     * This class represents an element of the priority queue for the Dijkstra
-     * algorithm. It contains the costs and the corresponding node. The costs are
-     * needed for sorting the priority queue.
-     */
-    class DijkstraState implements Comparable<DijkstraState> {
-      private int cost;
-
-      private Long node;
+  public RoutingResult route(MapPoint from, MapPoint to, SearchMode mode) {
+    return getRoutingEngine().route(from, to, mode);
+  }
 
-      public Long getNode() {
-        return node;
-      }
+  /**
+   * This method searches for the best route of a profile between the
+   * nodes closest to two map points (see RoutingEngine.route()).
+   * 
+   * @param from start map point
+   * @param to target map point
+   * @param mode the algorithm to use
+   * @param profile the profile
+   * 
+   * @return the route and its weight or 'null' if there is no route
+   */
+  public RoutingResult route(MapPoint from, MapPoint to, SearchMode mode, Profile profile) {
+    return getRoutingEngine().route(from, to, mode, profile);
+  }
 
-      public DijkstraState(int cost, Long node) {
-        this.cost = cost;
-        this.node = node;
-      }
+  /**
+   * This method computes the lengths of the shortest routes between all
+   * pairs of a set of start points and a set of target points (see
+   * RoutingEngine.distanceMatrix()).
+   *
+   * @param from start map points
+   * @param to target map points
+   *
+   * @return the distance from from[i] to to[j] at [i][j], -1 if there
+   * is no route
+   */
+  public int[][] distanceMatrix(MapPoint[] from, MapPoint[] to) {
+    return getRoutingEngine().distanceMatrix(from, to);
+  }
 
-      @Override
-      public int compareTo(DijkstraState o) {
-        int costComp = ((Integer) cost).compareTo(o.cost);
-        if (costComp != 0)
-          return costComp;
-        return node.compareTo(o.node);
-      }
+  /**
+   * This method finds all nodes that can be reached from the node closest
+   * to a map point within a distance (see RoutingEngine.reachable()).
+   *
+   * @param from start map point
+   * @param maxDistance the distance limit in meters
+   *
+   * @return the reached nodes and their distances
+   */
+  public Isochrone reachable(MapPoint from, int maxDistance) {
+    return getRoutingEngine().reachable(from, maxDistance);
+  }
 
-      @Override
-      public boolean equals(Object obj) {
-        DijkstraState otherCasted = (DijkstraState) obj;
-        return otherCasted.node.equals(node) && otherCasted.cost == cost;
-      }
-    }
+  /**
+   * This method finds the reachable nodes for many start points in
+   * parallel (see RoutingEngine.reachable()).
+   *
+   * @param from start map points
+   * @param maxDistance the distance limit in meters
+   *
+   * @return the reached nodes of each start point
+   */
+  public Isochrone[] reachable(MapPoint[] from, int maxDistance) {
+    return getRoutingEngine().reachable(from, maxDistance);
+  }
 
+  /**
+   * This method searches for the shortest route through the OpenStreetMap
+   * street/pathway network for two map points.
+   * 
+   * @param graph the frozen graph
+   * @param context the search context to use
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   * 
+   * @return a possible route to the destination and its length; the length
+   * of the route refers only to the length in the graph, the distance from
+   * 'from' to the start node or 'to' to the end node is neglected.
+   */
+  static RoutingResult sssp_dijkstra(CompactGraph graph, SearchContext context, int fromNode, int toNode) {
     /*
      * This variable is used to speed up the algorithm. If there is an estimate
      * for the maximum possible distance to the target node, all paths that are
@@ -166,150 +485,98 @@ public class MapGraph {
      */
     Optional<Integer> distMax = Optional.empty();
 
-    HashMap<Long, Integer> dist = new HashMap<Long, Integer>();
-    HashMap<Long, Long> prev = new HashMap<Long, Long>();
-
-    // PriorityQueue<DijkstraState> heapJava = new PriorityQueue<>();
-    // heapJava.add(new DijkstraState(0, new Node(0, 0)));
-
     /*
-     * A handle is needed to lower the priority of an element. Handles are
-     * stored in this variable accordingly.
+     * The distances and predecessors are kept in the search context. The
+     * priority queue holds node indices; it keeps track of the position of
+     * every node itself, so the priority of a node can be lowered directly.
      */
-    HashMap<Long, Object> handles = new HashMap<>();
-
-    Mutable<BinomialHeap<DijkstraState>> heap = new Mutable<>(null);
-
-    // PriorityQueue<DijkstraState> heap = new PriorityQueue<>();
-    // handles.put(fromNode.getId(), Optional.of(heap.add(new DijkstraState(0,
-    // fromNode.getId()))));
+    SearchContext.SearchState state = context.forward();
+    IndexedIntHeap heap = state.getHeap();
 
     Consumer<Void> init = __ -> {
-      dist.clear();
-      dist.put(fromNode.getId(), 0);
-      heap.set(new BinomialHeap<>());
-      handles.clear();
-      handles.put(fromNode.getId(), Optional.of(heap.get().insert(new DijkstraState(0, fromNode.getId()))));
+      context.forward();
+      state.setDist(fromNode, 0);
+      state.insert(fromNode, 0);
     };
 
     init.accept(null);
 
-    outer: while (heap.get().getSize() > 0) {
-      DijkstraState minState = heap.get().poll();
-      handles.remove(minState.getNode());
-      // DijkstraState minJava = heapJava.poll();
-
-      OSMNode minOSMNode = nodes.get(minState.getNode());
-
-      if (edges.containsKey(minState.getNode()))
-        for (MapEdge child : edges.get(minState.getNode())) {
-          OSMNode childOSMNode = nodes.get(child.getTo());
-
-          int distNew = dist.get(minState.getNode()) + minOSMNode.getLocation().distance(childOSMNode.getLocation());
-
-          if (distNew < dist.getOrDefault(child.getTo(), Integer.MAX_VALUE)) {
-            // heapJava.remove(new DijkstraState(dist[child.getIndex()],
-            // child));
-            // heapJava.add(new DijkstraState(distNew, child));
-
-            int distAir = childOSMNode.getLocation().distance(toNode.getLocation());
+    outer: while (heap.getSize() > 0) {
+      int min = state.poll();
+      state.countRelaxations(graph.endEdge(min) - graph.firstEdge(min));
+
+      for (int edge = graph.firstEdge(min); edge < graph.endEdge(min); edge++) {
+        int weight = graph.getWeight(edge);
+        if (weight == CompactGraph.CLOSED)
+          continue;
+        int child = graph.getTarget(edge);
+
+        int distNew = state.getDist(min) + weight;
+
+        if (distNew < state.getDist(child)) {
+          int distAir = graph.weightLowerBound(child, toNode);
+          /*
+           * The minimum distance to the destination is calculated. The path to the
+           * current successor node plus the distance to the successor node are used
+           * as a lower limit for the distance. The edge lengths are precomputed and
+           * the straight-line distance is bounded by the chord, so no trigonometric
+           * functions are evaluated during the search.
+           */
+          int distToDestMin = distNew + distAir;
+
+          if (distMax.isPresent()) {
             /*
-             * The minimum distance to the destination is calculated. The path to the
-             * current successor node plus the distance to the successor node are used
-             * as a lower limit for the distance.
-             *
+             * The basic idea for optimization is not to follow paths if they are longer
+             * than any known path. The lower limit is used to ignore nodes that are
+             * not suitable for the shortest path.
              */
-            int distToDestMin = distNew + distAir;
-
-            if (distMax.isPresent()) {
-              /*
-               * The basic idea for optimization is not to follow paths if they are longer
-               * than any known path.
-               */
-
-              /*
-               * Two approaches are distinguished; the following code uses the lower limit
-               * to ignore nodes that are not suitable for the shortest path.
-               */
-              if (distToDestMin <= distMax.get()) {
-                if (handles.containsKey(child.getTo())) {
-                  Object handle = handles.get(child.getTo());
-                  heap.get().replaceWithSmallerElement(handle, new DijkstraState(distNew, child.getTo()));
-                  // heap.remove(new DijkstraState(dist.get(child.getTo()),
-                  // child.getTo()));
-                  // heap.add(new DijkstraState(distNew, child.getTo()));
-                } else
-                  handles.put(child.getTo(), heap.get().insert(new DijkstraState(distNew, child.getTo())));
-              }
+            if (distToDestMin <= distMax.get()) {
+              if (heap.contains(child))
+                state.decreaseKey(child, distNew);
+              else
+                state.insert(child, distNew);
+            }
+          } else if (!heap.contains(child))
+            /*
+             * In this branch there is no estimation for the minimum distance yet.
+             * Therefore, the algorithm of Dijkstra is not used, but always the node
+             * is selected that is closest to the target in terms of linear distance.
+             * This is to ensure that an estimate of the distance to the target node
+             * can be obtained as quickly as possible.
+             */
+            state.insert(child, distToDestMin);
 
+          state.setDist(child, distNew);
+          state.setPrev(child, min);
+          if (child == toNode) {
+            /*
+             * If a target node is discovered, the distance estimation if updated.
+             */
+            if (!distMax.isPresent()) {
               /*
-               * The second approach optimizes more aggressively by adding to the linear distance
-               * a proportion that is expected to undercut a path in the graph. This of course leads
-               * to the fact that the minimum path might not be found if we are wrong.
-               */
-              // if (handles.containsKey(child.getTo())) {
-              // int distToDestMinExpected = distNew + distAir + (1 * distAir) /
-              // 6;
-              // if (distToDestMinExpected <= distMax.get()) {
-              // Object handle = handles.get(child.getTo());
-              // heap.replaceWithSmallerElement(handle, new DijkstraState(distNew,
-              // child.getTo()));
-              // }
-              // } else
-              // handles.put(child.getTo(), heap.insert(new
-              // DijkstraState(distNew, child.getTo())));
-
-            } else if (!handles.containsKey(child.getTo()))
-              /*
-               * In this branch there is no estimation for the minimum distance yet.
-               * Therefore, the algorithm of Dijkstra is not used, but always the node
-               * is selected that is closest to the target in terms of linear distance.
-               * This is to ensure that an estimate of the distance to the target node
-               * can be obtained as quickly as possible.
+               * When the target node is discovered the first time, the algorithm is restarted.
+               * The reason is that Dijkstra has not yet been executed correctly and possibly
+               * incorrect distances have been saved.
                */
-              handles.put(child.getTo(), heap.get().insert(new DijkstraState(distToDestMin, child.getTo())));
+              context.setRestarted();
+              init.accept(null);
+              state.setDist(child, distNew);
 
-            dist.put(child.getTo(), distNew);
-            prev.put(child.getTo(), minOSMNode.getId());
-            if (child.getTo() == toNode.getId()) {
-              /*
-               * If a target node is discovered, the distance estimation if updated.
-               */
-              if (!distMax.isPresent()) {
-                /*
-                 * When the target node is discovered the first time, the algorithm is restarted.
-                 * The reason is that Dijkstra has not yet been executed correctly and possibly
-                 * incorrect distances have been saved.
-                 */
-                init.accept(null);
-                dist.put(child.getTo(), distNew);
-
-                continue outer;
-              }
-              distMax = Optional.of(distNew);
+              continue outer;
             }
+            distMax = Optional.of(distNew);
           }
         }
+      }
     }
 
-    Integer distTo = dist.get(toNode.getId());
-    if (distTo == null)
+    int distTo = state.getDist(toNode);
+    if (distTo == SearchContext.INFINITY)
       return null;
 
     /*
      * The path is assembled by tracing the prev references backwards.
      */
-    ArrayList<OSMNode> path = new ArrayList<OSMNode>();
-    path.add(toNode);
-    OSMNode next = toNode;
-    while (!next.equals(fromNode)) {
-      next = nodes.get(prev.get(next.getId()));
-      path.add(next);
-    }
-    OSMNode[] pathArray = new OSMNode[path.size()];
-    for (int i = 0; i < pathArray.length; i++)
-      pathArray[i] = path.get(path.size() - i - 1);
-
-    return new RoutingResult(pathArray, distTo);
+    return new RoutingResult(state.path(graph, fromNode, toNode), distTo);
   }
 }
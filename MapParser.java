@@ -1,9 +1,7 @@
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Optional;
-import java.util.function.BiConsumer;
-import java.util.function.Consumer;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -12,33 +10,6 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
-class WayBuilder {
-  private BiConsumer<String, String> addTag;
-
-  public BiConsumer<String, String> getAddTag() {
-    return addTag;
-  }
-
-  private Consumer<Long> addWaypoint;
-
-  public Consumer<Long> getAddWaypoint() {
-    return addWaypoint;
-  }
-
-  private Function<Void, Optional<OSMWay>> finish;
-
-  public Function<Void, Optional<OSMWay>> getFinish() {
-    return finish;
-  }
-
-  public WayBuilder(BiConsumer<String, String> addTag, Consumer<Long> addWaypoint,
-      Function<Void, Optional<OSMWay>> finish) {
-    this.addTag = addTag;
-    this.addWaypoint = addWaypoint;
-    this.finish = finish;
-  }
-}
-
 class WayParserHandler extends DefaultHandler {
   private MapGraph mapGraph;
 
@@ -110,8 +81,7 @@ class NodeParserHandler extends DefaultHandler {
         long id = Long.parseLong(attributes.getValue("id"));
         double lat = Double.parseDouble(attributes.getValue("lat"));
         double lon = Double.parseDouble(attributes.getValue("lon"));
-        OSMNode osmNode = new OSMNode(id, lat, lon);
-        mapGraph.addNode(osmNode);
+        mapGraph.addNode(id, lat, lon);
         break;
       }
     }
@@ -119,72 +89,193 @@ class NodeParserHandler extends DefaultHandler {
 }
 
 
+/*
+ * This handler reads nodes and ways in a single pass. The coordinates of
+ * all nodes are buffered in a NodeStore since the ways that reference
+ * them come later in the file.
+ */
+class SinglePassParserHandler extends WayParserHandler {
+  private NodeStore nodeStore;
+
+  public SinglePassParserHandler(MapGraph mapGraph, Function<Long, WayBuilder> beginWay,
+      NodeStore nodeStore) {
+    super(mapGraph, beginWay);
+    this.nodeStore = nodeStore;
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes)
+      throws SAXException {
+    if (qName.equals("node")) {
+      long id = Long.parseLong(attributes.getValue("id"));
+      double lat = Double.parseDouble(attributes.getValue("lat"));
+      double lon = Double.parseDouble(attributes.getValue("lon"));
+      nodeStore.add(id, lat, lon);
+    }
+    super.startElement(uri, localName, qName, attributes);
+  }
+}
+
+
 /**
  * This class allows to create a MapGraph object from a file in
  * OSM format by using an XML parser.
  */
 public class MapParser {
+  /**
+   * This method starts building a way. The tags decide whether the way
+   * is part of the graph, whether it is a one-way street and in which
+   * direction, its name, its class, its speed limit and who may use it.
+   *
+   * @param id way id
+   *
+   * @return the builder that collects the tags and nodes of the way
+   */
+  static WayBuilder beginWay(long id) {
+    LongList waypointsList = new LongList();
+    Mutable<Optional<String>> name = new Mutable<>(Optional.empty());
+    Mutable<Boolean> validWay = new Mutable<>(false);
+    Mutable<Boolean> isOneWay = new Mutable<>(false);
+    Mutable<Boolean> reversed = new Mutable<>(false);
+    Mutable<Highway> highway = new Mutable<>(Highway.OTHER);
+    Mutable<Integer> maxSpeed = new Mutable<>(0);
+    Mutable<Optional<String>> access = new Mutable<>(Optional.empty());
+    return new WayBuilder((k, v) -> {
+      switch (k) {
+        case "name":
+          name.set(Optional.of(v));
+          break;
+        case "oneway":
+          isOneWay.set(v.equals("yes") || v.equals("true") || v.equals("1") || v.equals("-1"));
+          reversed.set(v.equals("-1"));
+          break;
+        case "maxspeed":
+          maxSpeed.set(parseMaxSpeed(v));
+          break;
+        case "access":
+          access.set(Optional.of(v));
+          break;
+        case "highway":
+          highway.set(Highway.of(v));
+          switch (v) {
+            // case "footway":
+            // validWay.set(false);
+            // break;
+            // case "bridleway":
+            // validWay.set(false);
+            // break;
+            // case "steps":
+            // validWay.set(false);
+            // break;
+            // case "path":
+            // validWay.set(false);
+            // break;
+            // case "cycleway":
+            // validWay.set(false);
+            // break;
+            case "proposed":
+              validWay.set(false);
+              break;
+            case "construction":
+              validWay.set(false);
+              break;
+            default:
+              validWay.set(true);
+              break;
+          }
+          break;
+      }
+    }, waypointId -> {
+      waypointsList.add(waypointId);
+    }, __ -> {
+      return validWay.get()
+          ? Optional
+              .of(new OSMWay(id, waypointsList.toArray(), isOneWay.get(), reversed.get(), name.get(),
+                  highway.get(), maxSpeed.get(), access.get()))
+          : Optional.empty();
+    });
+  }
+
+  /**
+   * This method reads the value of a 'maxspeed' tag, for example '50' or
+   * '30 mph'.
+   *
+   * @param value the value of the tag
+   *
+   * @return the speed limit in km/h, 0 if there is no numeric limit
+   */
+  static int parseMaxSpeed(String value) {
+    int end = 0;
+    while (end < value.length() && Character.isDigit(value.charAt(end)))
+      end++;
+    if (end == 0 || end > 3)
+      return 0;
+    int speed = Integer.parseInt(value.substring(0, end));
+    if (value.endsWith("mph"))
+      speed = (int) Math.round(speed * 1.609344);
+    return speed;
+  }
+
+  /**
+   * This method reads a file in a single pass. The file is tokenized in
+   * parallel on the common fork-join pool (see ChunkedOSMParser).
+   * 
+   * @param fileName name of the OSM file
+   *
+   * @return the frozen graph
+   */
   public static MapGraph parseFile(String fileName)
       throws SAXException, IOException, ParserConfigurationException {
+    return parseFile(fileName, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * This method reads a file in a single pass. A reader thread cuts the
+   * file into chunks, the workers of a pool tokenize them and the calling
+   * thread builds the graph.
+   * 
+   * @param fileName name of the OSM file
+   * @param pool the pool that tokenizes the chunks
+   *
+   * @return the frozen graph
+   */
+  public static MapGraph parseFile(String fileName, ForkJoinPool pool) throws IOException {
+    return ChunkedOSMParser.parse(fileName, pool);
+  }
+
+  /**
+   * This method reads a file with an XML parser on a single thread, either
+   * in a single pass or in two passes.
+   * A single pass buffers the coordinates of all nodes in the file and
+   * therefore needs more memory while parsing; two passes read the file
+   * twice and only keep the nodes that are part of a way.
+   * 
+   * @param fileName name of the OSM file
+   * @param singlePass 'true' to read the file only once
+   *
+   * @return the frozen graph
+   */
+  public static MapGraph parseFile(String fileName, boolean singlePass)
+      throws SAXException, IOException, ParserConfigurationException {
     File inputFile = new File(fileName);
     SAXParserFactory factory = SAXParserFactory.newInstance();
     SAXParser saxParser = factory.newSAXParser();
 
-    Function<Long, WayBuilder> beginWay = (id) -> {
-      ArrayList<Long> waypointsList = new ArrayList<>();
-      Mutable<Optional<String>> name = new Mutable<>(Optional.empty());
-      Mutable<Boolean> validWay = new Mutable<>(false);
-      Mutable<Boolean> isOneWay = new Mutable<>(false);
-      return new WayBuilder((k, v) -> {
-        switch (k) {
-          case "name":
-            name.set(Optional.of(v));
-            break;
-          case "oneway":
-            isOneWay.set(v.equals("yes"));
-            break;
-          case "highway":
-            switch (v) {
-              // case "footway":
-              // validWay.set(false);
-              // break;
-              // case "bridleway":
-              // validWay.set(false);
-              // break;
-              // case "steps":
-              // validWay.set(false);
-              // break;
-              // case "path":
-              // validWay.set(false);
-              // break;
-              // case "cycleway":
-              // validWay.set(false);
-              // break;
-              case "proposed":
-                validWay.set(false);
-                break;
-              case "construction":
-                validWay.set(false);
-                break;
-              default:
-                validWay.set(true);
-                break;
-            }
-            break;
-        }
-      }, waypointId -> {
-        waypointsList.add(waypointId);
-      }, __ -> {
-        return validWay.get()
-            ? Optional
-                .of(new OSMWay(id, waypointsList.toArray(new Long[0]), isOneWay.get(), name.get()))
-            : Optional.empty();
-      });
-    };
-
     MapGraph mapGraph = new MapGraph();
 
-    WayParserHandler userhandler = new WayParserHandler(mapGraph, beginWay);
+    if (singlePass) {
+      NodeStore nodeStore = new NodeStore();
+      saxParser.parse(inputFile, new SinglePassParserHandler(mapGraph, MapParser::beginWay, nodeStore));
+      /*
+       * Only the nodes that are part of a way are added to the graph.
+       */
+      for (int i = 0; i < nodeStore.size(); i++)
+        mapGraph.addNode(nodeStore.getId(i), nodeStore.getLat(i), nodeStore.getLon(i));
+      mapGraph.freeze();
+      return mapGraph;
+    }
+
+    WayParserHandler userhandler = new WayParserHandler(mapGraph, MapParser::beginWay);
     saxParser.parse(inputFile, userhandler);
 
     System.out.println("Finished reading ways, reading nodes...");
@@ -192,6 +283,7 @@ public class MapParser {
     NodeParserHandler nodeHandler = new NodeParserHandler(mapGraph);
     saxParser.parse(inputFile, nodeHandler);
 
+    mapGraph.freeze();
     return mapGraph;
   }
 }
@@ -3,10 +3,15 @@
  * position in the form of a longitude and latitude.
  */
 public class MapPoint {
+  /**
+   * Mean earth radius in meters
+   */
+  static final double EARTH_RADIUS = 6371e3;
+
   /**
    * Latitude
    */
-  private double lat;
+  private final double lat;
   
   public double getLat () {
     return lat;
@@ -15,7 +20,7 @@ public class MapPoint {
   /**
    * Longitude
    */
-  private double lon;
+  private final double lon;
   
   public double getLon () {
     return lon;
@@ -35,11 +40,26 @@ public class MapPoint {
    * @return distance in meters
    */
   public int distance(MapPoint other) {
-    double R = 6371e3; // metres
-    double φ1 = Math.toRadians(lat);
-    double φ2 = Math.toRadians(other.lat);
-    double Δφ = Math.toRadians(other.lat - lat);
-    double Δλ = Math.toRadians(other.lon - lon);
+    return distance(lat, lon, other.lat, other.lon);
+  }
+
+  /**
+   * This method calculates the distance between two positions
+   * given by their latitude and longitude
+   * 
+   * @param lat1 latitude of the first position
+   * @param lon1 longitude of the first position
+   * @param lat2 latitude of the second position
+   * @param lon2 longitude of the second position
+   *
+   * @return distance in meters
+   */
+  public static int distance(double lat1, double lon1, double lat2, double lon2) {
+    double R = EARTH_RADIUS;
+    double φ1 = Math.toRadians(lat1);
+    double φ2 = Math.toRadians(lat2);
+    double Δφ = Math.toRadians(lat2 - lat1);
+    double Δλ = Math.toRadians(lon2 - lon1);
 
     double a = Math.sin(Δφ/2) * Math.sin(Δφ/2) +
             Math.cos(φ1) * Math.cos(φ2) *
@@ -0,0 +1,245 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.function.IntPredicate;
+
+/**
+ * This class implements a spatial index for the nodes of a graph. It is
+ * a k-d tree over the positions of the nodes as unit vectors, so that the
+ * euclidean distance (the chord) grows with the distance on the earth.
+ *
+ * The tree is stored implicitly: the node indices are permuted such that
+ * the median of every range splits it into two subtrees.
+ */
+class NodeIndex {
+  /**
+   * Ranges of at most this size are scanned linearly.
+   */
+  private static final int LEAF_SIZE = 8;
+
+  private CompactGraph graph;
+
+  /**
+   * The node indices in tree order
+   */
+  private int[] order;
+
+  /**
+   * The splitting axis of the range whose median is at a position
+   */
+  private byte[] axes;
+
+  /**
+   * The coordinates of the nodes in tree order (x, y, z interleaved)
+   */
+  private double[] coords;
+
+  public NodeIndex(CompactGraph graph) {
+    this.graph = graph;
+    int n = graph.getNodeCount();
+    order = new int[n];
+    for (int i = 0; i < n; i++)
+      order[i] = i;
+    axes = new byte[n];
+    coords = new double[3 * n];
+    for (int i = 0; i < n; i++)
+      for (int axis = 0; axis < 3; axis++)
+        coords[3 * i + axis] = graph.getUnitVector(i, axis);
+    build(0, n);
+  }
+
+  /**
+   * This constructor loads the index from a snapshot.
+   *
+   * @param graph the graph the index was built for
+   * @param reader reader positioned at the index
+   */
+  NodeIndex(CompactGraph graph, GraphSnapshot.Reader reader) throws IOException {
+    this.graph = graph;
+    int n = graph.getNodeCount();
+    order = reader.readInts(n);
+    axes = reader.readBytes(n);
+    coords = new double[3 * n];
+    for (int i = 0; i < n; i++)
+      for (int axis = 0; axis < 3; axis++)
+        coords[3 * i + axis] = graph.getUnitVector(order[i], axis);
+  }
+
+  /**
+   * This method writes the index to a snapshot.
+   *
+   * @param out output stream
+   */
+  void write(DataOutputStream out) throws IOException {
+    GraphSnapshot.writeInts(out, order);
+    out.write(axes);
+  }
+
+  private void build(int lo, int hi) {
+    if (hi - lo <= LEAF_SIZE)
+      return;
+    int axis = widestAxis(lo, hi);
+    int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, axis);
+    axes[mid] = (byte) axis;
+    build(lo, mid);
+    build(mid + 1, hi);
+  }
+
+  private int widestAxis(int lo, int hi) {
+    int axisMax = 0;
+    double spreadMax = -1;
+    for (int axis = 0; axis < 3; axis++) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = lo; i < hi; i++) {
+        double c = coords[3 * i + axis];
+        if (c < min)
+          min = c;
+        if (c > max)
+          max = c;
+      }
+      if (max - min > spreadMax) {
+        spreadMax = max - min;
+        axisMax = axis;
+      }
+    }
+    return axisMax;
+  }
+
+  /**
+   * This method rearranges the range such that the element at position
+   * 'k' is the one that would be there if the range was sorted by 'axis'.
+   */
+  private void select(int left, int right, int k, int axis) {
+    while (right > left) {
+      double pivot = coords[3 * ((left + right) >>> 1) + axis];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (coords[3 * i + axis] < pivot)
+          i++;
+        while (coords[3 * j + axis] > pivot)
+          j--;
+        if (i <= j)
+          swap(i++, j--);
+      }
+      if (k <= j)
+        right = j;
+      else if (k >= i)
+        left = i;
+      else
+        return;
+    }
+  }
+
+  private void swap(int i, int j) {
+    int node = order[i];
+    order[i] = order[j];
+    order[j] = node;
+    for (int axis = 0; axis < 3; axis++) {
+      double c = coords[3 * i + axis];
+      coords[3 * i + axis] = coords[3 * j + axis];
+      coords[3 * j + axis] = c;
+    }
+  }
+
+  /*
+   * The state of a query; the best node found so far, its distance and
+   * the chord length a node must undercut to possibly be at least as close.
+   */
+  private static class Query {
+    private double lat;
+    private double lon;
+    private double[] q = new double[3];
+    private IntPredicate filter;
+    private int best = -1;
+    private int distBest = Integer.MAX_VALUE;
+    private double chordMax = Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * This method finds the node that is closest to a given position. If
+   * there are several nodes with the same smallest distance, the node with
+   * the smallest index (and therefore the smallest id) is returned.
+   *
+   * @param lat latitude
+   * @param lon longitude
+   *
+   * @return the index of the closest node or -1 if the graph is empty
+   */
+  public int closest(double lat, double lon) {
+    return closest(lat, lon, null);
+  }
+
+  /**
+   * This method finds the node that is closest to a given position among
+   * the nodes accepted by a filter. Ties are broken as in closest().
+   *
+   * @param lat latitude
+   * @param lon longitude
+   * @param filter the test a node must pass, 'null' to accept all nodes
+   *
+   * @return the index of the closest node or -1 if no node passes
+   */
+  public int closest(double lat, double lon, IntPredicate filter) {
+    Query query = new Query();
+    query.lat = lat;
+    query.lon = lon;
+    query.filter = filter;
+    double φ = Math.toRadians(lat);
+    double λ = Math.toRadians(lon);
+    query.q[0] = Math.cos(φ) * Math.cos(λ);
+    query.q[1] = Math.cos(φ) * Math.sin(λ);
+    query.q[2] = Math.sin(φ);
+    search(query, 0, order.length);
+    return query.best;
+  }
+
+  private void search(Query query, int lo, int hi) {
+    if (hi - lo <= LEAF_SIZE) {
+      for (int i = lo; i < hi; i++)
+        visit(query, i);
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    double d = query.q[axes[mid]] - coords[3 * mid + axes[mid]];
+    visit(query, mid);
+    /*
+     * All nodes on the far side of the splitting plane are at least as far
+     * away as the plane itself, so the far side is only searched if the
+     * plane is close enough.
+     */
+    if (d < 0) {
+      search(query, lo, mid);
+      if (-d < query.chordMax)
+        search(query, mid + 1, hi);
+    } else {
+      search(query, mid + 1, hi);
+      if (d < query.chordMax)
+        search(query, lo, mid);
+    }
+  }
+
+  private void visit(Query query, int i) {
+    double dx = coords[3 * i] - query.q[0];
+    double dy = coords[3 * i + 1] - query.q[1];
+    double dz = coords[3 * i + 2] - query.q[2];
+    if (Math.sqrt(dx * dx + dy * dy + dz * dz) >= query.chordMax)
+      return;
+    int node = order[i];
+    if (query.filter != null && !query.filter.test(node))
+      return;
+    int dist = MapPoint.distance(graph.getLat(node), graph.getLon(node), query.lat, query.lon);
+    if (dist < query.distBest || (dist == query.distBest && node < query.best)) {
+      query.best = node;
+      query.distBest = dist;
+      /*
+       * A node can only tie with the best node if its distance is below
+       * distBest + 1 meters; the bound is widened slightly to account for
+       * rounding errors.
+       */
+      double angle = (dist + 1) / (2 * MapPoint.EARTH_RADIUS);
+      query.chordMax = angle < Math.PI / 2 ? 2 * Math.sin(angle) * (1 + 1e-9) + 1e-12 : Double.POSITIVE_INFINITY;
+    }
+  }
+}
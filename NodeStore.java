@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+/**
+ * This class stores the coordinates of OSM nodes in primitive arrays.
+ * It is used to buffer all nodes of a file until the ways are known.
+ */
+class NodeStore {
+  private long[] ids;
+
+  private double[] lat;
+
+  private double[] lon;
+
+  private int size;
+
+  public NodeStore() {
+    ids = new long[1024];
+    lat = new double[1024];
+    lon = new double[1024];
+    size = 0;
+  }
+
+  public void add(long id, double lat, double lon) {
+    if (size == ids.length) {
+      int capacity = size + (size >> 1);
+      ids = Arrays.copyOf(ids, capacity);
+      this.lat = Arrays.copyOf(this.lat, capacity);
+      this.lon = Arrays.copyOf(this.lon, capacity);
+    }
+    ids[size] = id;
+    this.lat[size] = lat;
+    this.lon[size] = lon;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getId(int index) {
+    return ids[index];
+  }
+
+  public double getLat(int index) {
+    return lat[index];
+  }
+
+  public double getLon(int index) {
+    return lon[index];
+  }
+}
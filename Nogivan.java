@@ -8,10 +8,11 @@ public class Nogivan {
     
     System.out.println("Reading OSM data...");
     MapGraph g;
-    if(args.length > 0)
-      g = MapParser.parseFile(args[0]); 
+    String fileName = args.length > 0 ? args[0] : "map.osm";
+    if(fileName.endsWith(".graph"))
+      g = GraphSnapshot.read(fileName);
     else
-      g = MapParser.parseFile("map.osm");
+      g = MapParser.parseFile(fileName);
     System.out.println("Finished reading OSM data...");
 
     RoutingResult rr = g.route(new MapPoint(48.2690197, 11.6751468), new MapPoint(48.2638814, 11.6661943));
@@ -24,9 +25,9 @@ public class Nogivan {
     } else {
       System.out.println("Distance: " + rr.getDistance());
       System.out.println("Writing GPX track to route.gpx...");
-      GPXWriter gw = new GPXWriter("route.gpx");
-      gw.writeGPX(rr);
-      gw.close();
+      try (RouteWriter rw = new RouteWriter("route.gpx", RouteWriter.Format.GPX)) {
+        rw.write(rr);
+      }
     }
     
     System.out.println("Finished SSSP");
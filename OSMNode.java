@@ -5,7 +5,7 @@ public class OSMNode implements Comparable<OSMNode> {
   /**
    * The node ID.
    */
-  private long id;
+  private final long id;
   
   public long getId() {
     return id;
@@ -14,7 +14,7 @@ public class OSMNode implements Comparable<OSMNode> {
   /**
    * The coordinates of the map point.
    */
-  private MapPoint location;
+  private final MapPoint location;
   
   public MapPoint getLocation () {
     return location;
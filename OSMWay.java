@@ -16,9 +16,9 @@ public class OSMWay {
   /**
    * The nodes containing the way
    */
-  private Long[] nodes;
+  private long[] nodes;
   
-  public Long[] getNodes() {
+  public long[] getNodes() {
     return nodes;
   }
   
@@ -31,6 +31,16 @@ public class OSMWay {
     return oneWay;
   }
   
+  /**
+   * Defines if a one-way street leads from its last node to its first
+   * one (oneway=-1)
+   */
+  private boolean reversed;
+  
+  public boolean isReversed() {
+    return reversed;
+  }
+  
   /**
    * The name of the way, if available
    */
@@ -40,17 +50,63 @@ public class OSMWay {
     return name;
   }
   
-  public OSMWay(long id, Long[] nodes, boolean oneWay, Optional<String> name) {
+  /**
+   * The class of the way from its 'highway' tag
+   */
+  private Highway highway;
+  
+  public Highway getHighway() {
+    return highway;
+  }
+  
+  /**
+   * The speed limit in km/h, 0 if it is unknown
+   */
+  private int maxSpeed;
+  
+  public int getMaxSpeed() {
+    return maxSpeed;
+  }
+  
+  /**
+   * The value of the 'access' tag, if available
+   */
+  private Optional<String> access;
+  
+  public Optional<String> getAccess() {
+    return access;
+  }
+  
+  /**
+   * Defines if the way is closed to the public (access=no or
+   * access=private)
+   */
+  public boolean isRestricted() {
+    return access.filter(a -> a.equals("no") || a.equals("private")).isPresent();
+  }
+  
+  public OSMWay(long id, long[] nodes, boolean oneWay, Optional<String> name) {
+    this(id, nodes, oneWay, false, name, Highway.OTHER, 0, Optional.empty());
+  }
+  
+  public OSMWay(long id, long[] nodes, boolean oneWay, boolean reversed, Optional<String> name, Highway highway,
+      int maxSpeed, Optional<String> access) {
     this.id = id;
     this.nodes = nodes;
     this.oneWay = oneWay;
+    this.reversed = reversed;
     this.name = name;
+    this.highway = highway;
+    this.maxSpeed = maxSpeed;
+    this.access = access;
   }
   
   @Override
   public String toString() {
     StringBuilder sB = new StringBuilder();
-    sB.append("Way {id=").append(id).append(", oneWay=").append(oneWay).append(", name=").append(name).append("}").append('\n');
+    sB.append("Way {id=").append(id).append(", oneWay=").append(oneWay).append(", reversed=").append(reversed)
+        .append(", name=").append(name).append(", highway=").append(highway).append(", maxSpeed=").append(maxSpeed)
+        .append(", access=").append(access).append("}").append('\n');
     sB.append('\t');
     for (int i = 0; i < nodes.length; i++) {
       if(i > 0)
@@ -68,9 +124,11 @@ public class OSMWay {
     if(nodes.length != objCasted.nodes.length)
       return false;
     for (int i = 0; i < nodes.length; i++)
-      if(!nodes[i].equals(objCasted.nodes[i]))
+      if(nodes[i] != objCasted.nodes[i])
         return false;
-    if(oneWay != objCasted.oneWay)
+    if(oneWay != objCasted.oneWay || reversed != objCasted.reversed)
+      return false;
+    if(highway != objCasted.highway || maxSpeed != objCasted.maxSpeed || !access.equals(objCasted.access))
       return false;
     if(!name.equals(objCasted.name))
       return false;
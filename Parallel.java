@@ -0,0 +1,48 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class runs parallel streams on a given fork-join pool instead of
+ * the common pool, and waits for them to finish.
+ */
+class Parallel {
+  private Parallel() {
+  }
+
+  /**
+   * This method applies an action to all values in parallel.
+   *
+   * @param pool the pool to run on
+   * @param values the values
+   * @param action the action
+   */
+  static void forEach(ForkJoinPool pool, IntStream values, IntConsumer action) {
+    submit(pool, () -> {
+      values.parallel().forEach(action);
+      return null;
+    });
+  }
+
+  /**
+   * This method runs a task on a pool and waits for its result. An
+   * exception thrown by the task is rethrown.
+   *
+   * @param pool the pool to run on
+   * @param task the task
+   *
+   * @return the result of the task
+   */
+  static <T> T submit(ForkJoinPool pool, Callable<T> task) {
+    try {
+      return pool.submit(task).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ * This enumeration lists the routing profiles. A profile decides which
+ * edges a vehicle may use and what a route costs: either its length in
+ * meters or its travel time in tenths of a second. The weights of each
+ * profile are computed once when the graph is frozen (see weights()), so
+ * choosing a profile per query costs nothing.
+ *
+ * Cars and bikes follow one-way streets, pedestrians do not. Cars,
+ * bikes and pedestrians do not use ways with access=no or
+ * access=private. The speed on a way is taken from its class (see
+ * Highway); cars drive at the 'maxspeed' of a way instead if it is
+ * known, bikes at most at it.
+ */
+public enum Profile {
+  /**
+   * Every way, one-way streets only in their direction, shortest route;
+   * the profile of queries without a profile
+   */
+  DEFAULT(null, false),
+
+  /**
+   * Fastest route by car
+   */
+  CAR(Vehicle.CAR, true),
+
+  /**
+   * Shortest route by car
+   */
+  CAR_SHORTEST(Vehicle.CAR, false),
+
+  /**
+   * Fastest route by bike
+   */
+  BIKE(Vehicle.BIKE, true),
+
+  /**
+   * Shortest route by bike
+   */
+  BIKE_SHORTEST(Vehicle.BIKE, false),
+
+  /**
+   * Fastest route on foot
+   */
+  FOOT(Vehicle.FOOT, true),
+
+  /**
+   * Shortest route on foot
+   */
+  FOOT_SHORTEST(Vehicle.FOOT, false);
+
+  private enum Vehicle {
+    CAR, BIKE, FOOT
+  }
+
+  /**
+   * The number of weight units per second of travel time
+   */
+  public static final int TIME_UNITS_PER_SECOND = 10;
+
+  /**
+   * The vehicle, 'null' for the default profile
+   */
+  private Vehicle vehicle;
+
+  /**
+   * Whether routes are optimized for travel time rather than distance
+   */
+  private boolean fastest;
+
+  private Profile(Vehicle vehicle, boolean fastest) {
+    this.vehicle = vehicle;
+    this.fastest = fastest;
+  }
+
+  public boolean isFastest() {
+    return fastest;
+  }
+
+  /**
+   * This method computes the speed of the vehicle on an edge.
+   *
+   * @param graph the frozen graph
+   * @param edge edge index
+   *
+   * @return the speed in km/h, 0 if the vehicle may not use the edge
+   */
+  private int speed(CompactGraph graph, int edge) {
+    if (graph.isRestricted(edge))
+      return 0;
+    Highway highway = graph.getHighway(edge);
+    int maxSpeed = graph.getMaxSpeed(edge);
+    switch (vehicle) {
+      case CAR:
+        return highway.getCarSpeed() > 0 && maxSpeed > 0 ? maxSpeed : highway.getCarSpeed();
+      case BIKE:
+        return maxSpeed > 0 ? Math.min(highway.getBikeSpeed(), maxSpeed) : highway.getBikeSpeed();
+      case FOOT:
+      default:
+        return highway.getFootSpeed();
+    }
+  }
+
+  /**
+   * This method computes the graph of the profile. It shares all arrays
+   * except the weights with the frozen graph, in which edges against the
+   * direction of one-way streets are closed; the default profile uses the
+   * frozen graph itself.
+   *
+   * In a graph of travel times, the estimated distance between two nodes
+   * is divided by the highest speed on any edge (see
+   * CompactGraph.weightLowerBound()); the potential of the A* search
+   * adapts to the weights by itself (see CompactGraph.potential()).
+   *
+   * @param graph the frozen graph
+   *
+   * @return the graph with the weights of the profile
+   */
+  CompactGraph weights(CompactGraph graph) {
+    if (vehicle == null)
+      return graph;
+    int[] weights = new int[graph.getEdgeCount()];
+    int maxSpeed = 1;
+    for (int from = 0; from < graph.getNodeCount(); from++)
+      for (int edge = graph.firstEdge(from); edge < graph.endEdge(from); edge++) {
+        int speed = speed(graph, edge);
+        boolean againstOneWay = graph.getWeight(edge) == CompactGraph.CLOSED;
+        if (speed == 0 || againstOneWay && vehicle != Vehicle.FOOT) {
+          weights[edge] = CompactGraph.CLOSED;
+          continue;
+        }
+        int to = graph.getTarget(edge);
+        int meters = MapPoint.distance(graph.getLat(from), graph.getLon(from), graph.getLat(to),
+            graph.getLon(to));
+        /*
+         * A speed of 1 km/h is 1 / 3.6 m/s, so the time in tenths of a
+         * second is meters * 36 / speed, rounded up.
+         */
+        weights[edge] = fastest ? (int) ((36L * meters + speed - 1) / speed) : meters;
+        maxSpeed = Math.max(maxSpeed, speed);
+      }
+    if (!fastest)
+      return graph.withWeights(weights);
+    return graph.withWeights(weights, 36, maxSpeed);
+  }
+}
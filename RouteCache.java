@@ -0,0 +1,255 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class implements a bounded cache of routes for a RoutingEngine.
+ * Routes are looked up by the indices of their snapped start and target
+ * nodes, the profile and the search mode; a path is stored as an array
+ * of node indices, not of OSMNode objects. Routes that do not exist are
+ * cached as well.
+ *
+ * The cache is divided into stripes by the hash of the key. Each stripe
+ * is a LinkedHashMap in access order under its own lock, which evicts
+ * the least recently used routes once its share of the budget is used
+ * up. The budget is either a number of routes or a number of bytes.
+ *
+ * Each route records the version of the weights it was computed with
+ * (see CompactGraph.getVersion()) and is only returned for a graph with
+ * the same version. A search that started before an update therefore
+ * cannot put a route into the cache that is returned after it.
+ */
+public class RouteCache {
+  private static final int STRIPES = 16;
+
+  /**
+   * The estimated size of a cached route apart from its nodes: the map
+   * entry, the key, the route and the array header
+   */
+  private static final int ENTRY_BYTES = 128;
+
+  private static class Key {
+    private int fromNode;
+
+    private int toNode;
+
+    /**
+     * The ordinals of the profile and the search mode
+     */
+    private short profile;
+
+    private short mode;
+
+    private Key(int fromNode, int toNode, Profile profile, SearchMode mode) {
+      this.fromNode = fromNode;
+      this.toNode = toNode;
+      this.profile = (short) profile.ordinal();
+      this.mode = (short) mode.ordinal();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return fromNode == other.fromNode && toNode == other.toNode && profile == other.profile && mode == other.mode;
+    }
+
+    @Override
+    public int hashCode() {
+      long key = ((long) fromNode << 32) | (toNode & 0xFFFFFFFFL);
+      int hash = Long.hashCode((key ^ (profile << 8 | mode)) * 0x9E3779B97F4A7C15L);
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+  private static class Route {
+    private long version;
+
+    private int distance;
+
+    /**
+     * The node indices of the path, 'null' if there is no route
+     */
+    private int[] nodes;
+
+    private Route(long version, int distance, int[] nodes) {
+      this.version = version;
+      this.distance = distance;
+      this.nodes = nodes;
+    }
+  }
+
+  private static class Stripe {
+    private LinkedHashMap<Key, Route> routes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+  }
+
+  /**
+   * This interface is implemented by the search run on a cache miss.
+   */
+  interface RouteSearch {
+    RoutingResult route(int fromNode, int toNode);
+  }
+
+  private Stripe[] stripes;
+
+  /**
+   * Whether the budget is a number of bytes rather than of routes
+   */
+  private boolean byMemory;
+
+  private long budgetPerStripe;
+
+  private LongAdder hits = new LongAdder();
+  private LongAdder misses = new LongAdder();
+  private LongAdder evictions = new LongAdder();
+
+  private RouteCache(long budget, boolean byMemory) {
+    if (budget < 1)
+      throw new IllegalArgumentException("The budget must be positive");
+    this.byMemory = byMemory;
+    budgetPerStripe = Math.max(1, budget / STRIPES);
+    stripes = new Stripe[STRIPES];
+    for (int i = 0; i < STRIPES; i++)
+      stripes[i] = new Stripe();
+  }
+
+  /**
+   * This method creates a cache that holds up to a number of routes.
+   *
+   * @param maxRoutes the maximum number of routes
+   *
+   * @return the cache
+   */
+  public static RouteCache ofSize(long maxRoutes) {
+    return new RouteCache(maxRoutes, false);
+  }
+
+  /**
+   * This method creates a cache whose routes take up to about a number
+   * of bytes of memory.
+   *
+   * @param maxBytes the maximum estimated memory
+   *
+   * @return the cache
+   */
+  public static RouteCache ofMemory(long maxBytes) {
+    return new RouteCache(maxBytes, true);
+  }
+
+  private Stripe stripe(Key key) {
+    return stripes[key.hashCode() & (STRIPES - 1)];
+  }
+
+  private long weight(Route route) {
+    if (!byMemory)
+      return 1;
+    return ENTRY_BYTES + (route.nodes == null ? 0 : 4L * route.nodes.length);
+  }
+
+  /**
+   * This method looks up a route. If it is not in the cache, it is
+   * computed and stored. Concurrent misses on the same pair may compute
+   * the route more than once.
+   *
+   * @param graph the frozen graph the node indices refer to
+   * @param profile the profile of the route
+   * @param mode the search mode of the route
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   * @param search computes the route if it is missing
+   *
+   * @return the route and its length or 'null' if there is no route
+   */
+  RoutingResult get(CompactGraph graph, Profile profile, SearchMode mode, int fromNode, int toNode,
+      RouteSearch search) {
+    Key key = new Key(fromNode, toNode, profile, mode);
+    Stripe stripe = stripe(key);
+    Route route;
+    synchronized (stripe) {
+      route = stripe.routes.get(key);
+    }
+    if (route != null && route.version == graph.getVersion()) {
+      hits.increment();
+      return toResult(graph, route);
+    }
+    misses.increment();
+
+    RoutingResult result = search.route(fromNode, toNode);
+    route = fromResult(graph, result);
+    long weight = weight(route);
+    synchronized (stripe) {
+      Route previous = stripe.routes.put(key, route);
+      stripe.weight += weight;
+      if (previous != null)
+        stripe.weight -= weight(previous);
+      Iterator<Map.Entry<Key, Route>> eldest = stripe.routes.entrySet().iterator();
+      while (stripe.weight > budgetPerStripe && stripe.routes.size() > 1) {
+        stripe.weight -= weight(eldest.next().getValue());
+        eldest.remove();
+        evictions.increment();
+      }
+    }
+    return result;
+  }
+
+  private static Route fromResult(CompactGraph graph, RoutingResult result) {
+    if (result == null)
+      return new Route(graph.getVersion(), -1, null);
+    OSMNode[] path = result.getPath();
+    int[] nodes = new int[path.length];
+    for (int i = 0; i < path.length; i++)
+      nodes[i] = graph.indexOf(path[i].getId());
+    return new Route(graph.getVersion(), result.getDistance(), nodes);
+  }
+
+  private static RoutingResult toResult(CompactGraph graph, Route route) {
+    if (route.nodes == null)
+      return null;
+    OSMNode[] path = new OSMNode[route.nodes.length];
+    for (int i = 0; i < path.length; i++)
+      path[i] = graph.getNode(route.nodes[i]);
+    return new RoutingResult(path, route.distance);
+  }
+
+  /**
+   * This method removes all routes, for example because the weights of
+   * the graph have changed. The counters are kept.
+   */
+  public void clear() {
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        stripe.routes.clear();
+        stripe.weight = 0;
+      }
+  }
+
+  /**
+   * Returns the number of routes in the cache.
+   *
+   * @return number of routes
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes)
+      synchronized (stripe) {
+        size += stripe.routes.size();
+      }
+    return size;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+}
@@ -0,0 +1,271 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes many routes into one file, as GPX tracks, as GeoJSON
+ * features or as encoded polylines. The output goes through a large
+ * buffer directly into a file channel. Numbers are formatted digit by
+ * digit into the buffer, so writing a route creates no garbage.
+ *
+ * Coordinates are written with 7 decimals, the precision of OSM, and
+ * encoded polylines with 5 decimals, as in the Google format.
+ */
+public class RouteWriter implements Closeable {
+  /**
+   * This enumeration lists the output formats.
+   */
+  public enum Format {
+    /**
+     * A GPX file with one track per route
+     */
+    GPX,
+
+    /**
+     * A GeoJSON feature collection with one line string per route; the
+     * distance of a route is a property of its feature
+     */
+    GEOJSON,
+
+    /**
+     * One encoded polyline per line
+     */
+    POLYLINE
+  }
+
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /**
+   * Space that is always left in the buffer for a single value
+   */
+  private static final int RESERVE = 64;
+
+  private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L,
+      10_000_000L };
+
+  private FileChannel channel;
+
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  private Format format;
+
+  /**
+   * The number of routes written so far
+   */
+  private long routes;
+
+  /**
+   * Scratch space for the digits of a number
+   */
+  private byte[] digits = new byte[20];
+
+  /**
+   * This constructor creates a file and writes the header of the format.
+   *
+   * @param fileName name of the file
+   * @param format the output format
+   */
+  public RouteWriter(String fileName, Format format) throws IOException {
+    this.format = format;
+    channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    switch (format) {
+      case GPX:
+        put("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\" ?>\n");
+        put("<gpx version=\"1.1\" creator=\"Nogivan\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+        break;
+      case GEOJSON:
+        put("{\"type\":\"FeatureCollection\",\"features\":[");
+        break;
+      case POLYLINE:
+        break;
+    }
+  }
+
+  /**
+   * This method appends a route.
+   *
+   * @param rr the route
+   */
+  public void write(RoutingResult rr) throws IOException {
+    OSMNode[] path = rr.getPath();
+    switch (format) {
+      case GPX:
+        put("  <trk>\n    <number>");
+        putLong(routes);
+        put("</number>\n    <trkseg>\n");
+        for (OSMNode node : path) {
+          put("      <trkpt lat=\"");
+          putCoordinate(node.getLocation().getLat());
+          put("\" lon=\"");
+          putCoordinate(node.getLocation().getLon());
+          put("\"/>\n");
+        }
+        put("    </trkseg>\n  </trk>\n");
+        break;
+      case GEOJSON:
+        put(routes == 0 ? "\n" : ",\n");
+        put("{\"type\":\"Feature\",\"properties\":{\"distance\":");
+        putLong(rr.getDistance());
+        put("},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+        for (int i = 0; i < path.length; i++) {
+          put(i == 0 ? "[" : ",[");
+          putCoordinate(path[i].getLocation().getLon());
+          put(",");
+          putCoordinate(path[i].getLocation().getLat());
+          put("]");
+        }
+        put("]}}");
+        break;
+      case POLYLINE:
+        long latPrevious = 0;
+        long lonPrevious = 0;
+        for (OSMNode node : path) {
+          long lat = Math.round(node.getLocation().getLat() * 1e5);
+          long lon = Math.round(node.getLocation().getLon() * 1e5);
+          putPolylineValue(lat - latPrevious);
+          putPolylineValue(lon - lonPrevious);
+          latPrevious = lat;
+          lonPrevious = lon;
+        }
+        put("\n");
+        break;
+    }
+    routes++;
+  }
+
+  /**
+   * This method writes the end of the format and closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      switch (format) {
+        case GPX:
+          put("</gpx>\n");
+          break;
+        case GEOJSON:
+          put("\n]}\n");
+          break;
+        case POLYLINE:
+          break;
+      }
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+
+  private void ensureReserve() throws IOException {
+    if (buffer.remaining() < RESERVE)
+      flush();
+  }
+
+  /**
+   * This method writes a string of ASCII characters.
+   */
+  private void put(String s) throws IOException {
+    for (int i = 0; i < s.length(); i++) {
+      if (!buffer.hasRemaining())
+        flush();
+      buffer.put((byte) s.charAt(i));
+    }
+  }
+
+  private void putLong(long value) throws IOException {
+    ensureReserve();
+    if (value < 0) {
+      buffer.put((byte) '-');
+      value = -value;
+    }
+    int length = 0;
+    do {
+      digits[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    while (length > 0)
+      buffer.put(digits[--length]);
+  }
+
+  /**
+   * This method writes a coordinate with 7 decimals.
+   */
+  private void putCoordinate(double value) throws IOException {
+    long scaled = Math.round(value * POWERS_OF_TEN[7]);
+    if (scaled < 0) {
+      ensureReserve();
+      buffer.put((byte) '-');
+      scaled = -scaled;
+    }
+    putLong(scaled / POWERS_OF_TEN[7]);
+    buffer.put((byte) '.');
+    long fraction = scaled % POWERS_OF_TEN[7];
+    for (int i = 6; i >= 0; i--)
+      buffer.put((byte) ('0' + fraction / POWERS_OF_TEN[i] % 10));
+  }
+
+  /**
+   * This method writes a value of an encoded polyline.
+   */
+  private void putPolylineValue(long value) throws IOException {
+    ensureReserve();
+    buffer.put(digits, 0, encodePolylineValue(value, digits, 0));
+  }
+
+  /**
+   * This method encodes a value of an encoded polyline: the value is
+   * shifted left by one bit and inverted if negative, then written in
+   * chunks of 5 bits, the least significant first, each one offset by 63
+   * and marked with 0x20 if another chunk follows.
+   *
+   * @param value the difference to the previous coordinate in 1e-5 degrees
+   * @param out the array to write the characters to
+   * @param offset the position of the first character
+   *
+   * @return the number of characters written, at most 13
+   */
+  static int encodePolylineValue(long value, byte[] out, int offset) {
+    long encoded = value < 0 ? ~(value << 1) : value << 1;
+    int length = 0;
+    while (encoded >= 0x20) {
+      out[offset + length++] = (byte) ((0x20 | (encoded & 0x1F)) + 63);
+      encoded >>= 5;
+    }
+    out[offset + length++] = (byte) (encoded + 63);
+    return length;
+  }
+
+  /**
+   * This method encodes a path as a polyline.
+   *
+   * @param path the nodes of the path
+   *
+   * @return the encoded polyline
+   */
+  static String encodePolyline(OSMNode[] path) {
+    byte[] out = new byte[26 * path.length];
+    int length = 0;
+    long latPrevious = 0;
+    long lonPrevious = 0;
+    for (OSMNode node : path) {
+      long lat = Math.round(node.getLocation().getLat() * 1e5);
+      long lon = Math.round(node.getLocation().getLon() * 1e5);
+      length += encodePolylineValue(lat - latPrevious, out, length);
+      length += encodePolylineValue(lon - lonPrevious, out, length);
+      latPrevious = lat;
+      lonPrevious = lon;
+    }
+    return new String(out, 0, length, StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,417 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class answers routing queries on a frozen graph. It can be used
+ * by many threads at the same time: queries do not modify the graph or
+ * the preprocessed data, and each query takes a search context from a
+ * pool for its distances, predecessors and priority queue. Because the
+ * contexts are reused, a query neither allocates arrays proportional to
+ * the size of the graph nor clears them.
+ *
+ * Each query can choose a Profile. The weights and components of all
+ * profiles are computed when the graph is frozen; the preprocessed data
+ * (contraction hierarchy, landmarks and compressed chains) belongs to
+ * the default profile, and queries of other profiles use the search
+ * modes without it.
+ *
+ * Roads can be closed or slowed down while queries are running (see
+ * update()). Each query reads the current graph once and uses it to the
+ * end, so it never sees half of an update and is never blocked by one.
+ */
+public class RoutingEngine {
+  private MapGraph mapGraph;
+
+  /**
+   * The graph of each profile with the original weights, by ordinal
+   */
+  private CompactGraph[] baseGraphs;
+
+  /**
+   * The graph of each profile with the current weights; the array is
+   * replaced as a whole by updates.
+   */
+  private volatile CompactGraph[] graphs;
+
+  /**
+   * The edges of each way; it is created by the first update.
+   */
+  private Map<Long, int[]> edgesByWay;
+
+  private SearchContextPool contexts;
+
+  private Components[] components;
+
+  private volatile RouteCache routeCache;
+
+  private volatile boolean statisticsEnabled;
+
+  private volatile boolean componentSnapping = true;
+
+  /**
+   * This constructor creates an engine for a graph; it freezes the graph.
+   *
+   * @param mapGraph the graph
+   */
+  public RoutingEngine(MapGraph mapGraph) {
+    this.mapGraph = mapGraph;
+    Profile[] profiles = Profile.values();
+    this.baseGraphs = new CompactGraph[profiles.length];
+    this.components = new Components[profiles.length];
+    for (Profile profile : profiles) {
+      baseGraphs[profile.ordinal()] = mapGraph.frozen(profile);
+      components[profile.ordinal()] = mapGraph.getComponents(profile);
+    }
+    this.graphs = baseGraphs;
+    this.contexts = new SearchContextPool(mapGraph.frozen().getNodeCount());
+  }
+
+  /**
+   * This method puts a cache in front of the route queries, or removes
+   * it if 'routeCache' is 'null'. A cached route is only returned for
+   * the profile and the search mode it has been computed with.
+   *
+   * @param routeCache the cache, which must not be shared with the
+   * engine of another graph
+   */
+  public void setRouteCache(RouteCache routeCache) {
+    this.routeCache = routeCache;
+  }
+
+  public RouteCache getRouteCache() {
+    return routeCache;
+  }
+
+  /**
+   * This method enables or disables the statistics of queries. If they
+   * are enabled, each RoutingResult carries the SearchStatistics of its
+   * query, and the statistics are added to SearchMetrics and recorded as
+   * SearchEvent for Java Flight Recorder.
+   *
+   * @param statisticsEnabled 'true' to collect statistics
+   */
+  public void setStatisticsEnabled(boolean statisticsEnabled) {
+    this.statisticsEnabled = statisticsEnabled;
+  }
+
+  public boolean isStatisticsEnabled() {
+    return statisticsEnabled;
+  }
+
+  /**
+   * This method decides how map points are snapped to nodes. By default,
+   * the two points of a query are snapped to their closest nodes if these
+   * belong to the same strongly connected component, and otherwise to the
+   * closest nodes of the largest component. This avoids snapping to a
+   * node on an island, such as a parking lot or a fragment cut off at the
+   * border of the map, from which no route leads to the other point. If
+   * it is disabled, the points are always snapped to their closest nodes.
+   *
+   * @param componentSnapping 'true' to snap to the largest component
+   */
+  public void setComponentSnapping(boolean componentSnapping) {
+    this.componentSnapping = componentSnapping;
+  }
+
+  public boolean isComponentSnapping() {
+    return componentSnapping;
+  }
+
+  /**
+   * This method snaps map points to nodes (see setComponentSnapping()).
+   * If the closest nodes do not all belong to one strongly connected
+   * component of the profile, all points are snapped to its largest
+   * component.
+   *
+   * @param profile the profile
+   * @param points map points
+   *
+   * @return the node indices
+   */
+  private int[] snap(Profile profile, MapPoint... points) {
+    Components components = this.components[profile.ordinal()];
+    int[] nodes = new int[points.length];
+    boolean shared = true;
+    for (int i = 0; i < points.length; i++) {
+      nodes[i] = mapGraph.snap(points[i]);
+      shared &= components.sameComponent(nodes[0], nodes[i]);
+    }
+    if (componentSnapping && !shared)
+      for (int i = 0; i < points.length; i++)
+        if (!components.inLargest(nodes[i]))
+          nodes[i] = mapGraph.snapToLargestComponent(points[i], profile);
+    return nodes;
+  }
+
+  /**
+   * This method applies closures and weight overrides. The weights are
+   * copied and changed, and new queries use the copy from then on;
+   * queries that are already running finish on the old weights. If a
+   * change fails, none of them is applied. Updates are applied one after
+   * the other.
+   *
+   * The changes apply to all profiles. While weights are changed, the
+   * contraction hierarchy and the compressed chains, which depend on the
+   * original weights, are not used: CONTRACTION_HIERARCHY queries run as
+   * BIDIRECTIONAL queries and ASTAR and BIDIRECTIONAL queries run on the
+   * full graph. The landmarks remain valid. Nodes are still snapped as if
+   * nothing were closed.
+   *
+   * @param update the changes
+   */
+  public synchronized void update(WeightUpdate update) {
+    if (edgesByWay == null)
+      edgesByWay = baseGraphs[0].edgesByWay();
+    CompactGraph[] graphs = new CompactGraph[baseGraphs.length];
+    for (int i = 0; i < graphs.length; i++) {
+      CompactGraph baseGraph = baseGraphs[i];
+      int[] weights = this.graphs[i].copyWeights();
+      update.apply(baseGraph, edgesByWay, weights);
+      graphs[i] = baseGraph.hasWeights(weights) ? baseGraph : baseGraph.withWeights(weights);
+    }
+    publish(graphs);
+  }
+
+  /**
+   * This method takes back all closures and weight overrides.
+   */
+  public synchronized void resetUpdates() {
+    publish(baseGraphs);
+  }
+
+  /**
+   * Returns whether weights are currently changed by updates.
+   *
+   * @return 'true' if some edge is closed or has another weight
+   */
+  public boolean isUpdated() {
+    CompactGraph[] graphs = this.graphs;
+    for (int i = 0; i < graphs.length; i++)
+      if (graphs[i] != baseGraphs[i])
+        return true;
+    return false;
+  }
+
+  private void publish(CompactGraph[] graphs) {
+    this.graphs = graphs;
+    /*
+     * The routes of the old weights are not returned by the cache anyway,
+     * but they take up space.
+     */
+    RouteCache routeCache = this.routeCache;
+    if (routeCache != null)
+      routeCache.clear();
+  }
+
+  public RoutingResult route(MapPoint from, MapPoint to) {
+    return route(from, to, SearchMode.DIJKSTRA);
+  }
+
+  /**
+   * This method searches for the shortest route between the nodes
+   * closest to two map points (see setComponentSnapping()).
+   * 
+   * @param from start map point
+   * @param to target map point
+   * @param mode the algorithm to use
+   * 
+   * @return the route and its length or 'null' if there is no route
+   */
+  public RoutingResult route(MapPoint from, MapPoint to, SearchMode mode) {
+    return route(from, to, mode, Profile.DEFAULT);
+  }
+
+  /**
+   * This method searches for the best route of a profile between the
+   * nodes closest to two map points (see setComponentSnapping()).
+   * 
+   * @param from start map point
+   * @param to target map point
+   * @param mode the algorithm to use
+   * @param profile the profile
+   * 
+   * @return the route and its weight, a length or a travel time (see
+   * Profile), or 'null' if there is no route
+   */
+  public RoutingResult route(MapPoint from, MapPoint to, SearchMode mode, Profile profile) {
+    checkPrepared(mode);
+    boolean statisticsEnabled = this.statisticsEnabled;
+    long start = statisticsEnabled ? System.nanoTime() : 0;
+    int[] nodes = snap(profile, from, to);
+    int fromNode = nodes[0];
+    int toNode = nodes[1];
+    long snapped = statisticsEnabled ? System.nanoTime() : 0;
+    CompactGraph graph = graphs[profile.ordinal()];
+    SearchContext context = contexts.acquire();
+    try {
+      context.startQuery();
+      RouteCache routeCache = this.routeCache;
+      RoutingResult result;
+      if (!components[profile.ordinal()].mayReach(fromNode, toNode))
+        /*
+         * If the components rule out a route, no search is needed.
+         */
+        result = null;
+      else if (routeCache != null)
+        result = routeCache.get(graph, profile, mode, fromNode, toNode,
+            (f, t) -> route(context, profile, graph, f, t, mode));
+      else
+        result = route(context, profile, graph, fromNode, toNode, mode);
+      if (statisticsEnabled) {
+        SearchStatistics statistics = context.statistics(mode, snapped - start, System.nanoTime() - snapped);
+        SearchMetrics.record(statistics);
+        if (result != null)
+          result.setStatistics(statistics);
+      }
+      return result;
+    } finally {
+      contexts.release(context);
+    }
+  }
+
+  /**
+   * This method makes sure that the preprocessing a search mode needs
+   * has been done, so that queries fail the same way whether or not their
+   * route is cached or ruled out by the components.
+   *
+   * @param mode the algorithm to use
+   */
+  private void checkPrepared(SearchMode mode) {
+    if (mode == SearchMode.CONTRACTION_HIERARCHY && mapGraph.getContractionHierarchy() == null)
+      throw new IllegalStateException("The contraction hierarchy has not been prepared");
+    if (mode == SearchMode.ALT && mapGraph.getLandmarks() == null)
+      throw new IllegalStateException("The landmarks have not been prepared");
+  }
+
+  /**
+   * This method searches for the shortest route between two nodes.
+   *
+   * @param context the search context to use
+   * @param profile the profile
+   * @param graph the graph of the profile with the current weights
+   * @param fromNode index of the start node
+   * @param toNode index of the target node
+   * @param mode the algorithm to use
+   *
+   * @return the route and its length or 'null' if there is no route
+   */
+  private RoutingResult route(SearchContext context, Profile profile, CompactGraph graph, int fromNode,
+      int toNode, SearchMode mode) {
+    /*
+     * The preprocessed data is only valid for the original weights of the
+     * default profile.
+     */
+    boolean preprocessed = graph == baseGraphs[Profile.DEFAULT.ordinal()];
+    switch (mode) {
+      case ASTAR:
+        ChainGraph chainGraph = mapGraph.getChainGraph();
+        if (chainGraph != null && preprocessed)
+          return chainGraph.route(context, fromNode, toNode, false);
+        return AStar.route(graph, context, fromNode, toNode, node -> graph.potential(node, toNode));
+      case BIDIRECTIONAL:
+        chainGraph = mapGraph.getChainGraph();
+        if (chainGraph != null && preprocessed)
+          return chainGraph.route(context, fromNode, toNode, true);
+        return BidirectionalDijkstra.route(graph, context, fromNode, toNode);
+      case CONTRACTION_HIERARCHY:
+        if (!preprocessed)
+          return BidirectionalDijkstra.route(graph, context, fromNode, toNode);
+        return mapGraph.getContractionHierarchy().route(context, fromNode, toNode);
+      case ALT:
+        Landmarks landmarks = mapGraph.getLandmarks();
+        /*
+         * The landmarks remain lower bounds if weights are only raised,
+         * but not for the weights of another profile.
+         */
+        if (profile != Profile.DEFAULT)
+          return AStar.route(graph, context, fromNode, toNode, node -> graph.potential(node, toNode));
+        return AStar.route(graph, context, fromNode, toNode, landmarks.potential(fromNode, toNode));
+      case DIJKSTRA:
+      default:
+        return MapGraph.sssp_dijkstra(graph, context, fromNode, toNode);
+    }
+  }
+
+  public int[][] distanceMatrix(MapPoint[] from, MapPoint[] to) {
+    return distanceMatrix(from, to, Profile.DEFAULT);
+  }
+
+  /**
+   * This method computes the weights of the best routes of a profile
+   * between all pairs of a set of start points and a set of target
+   * points. Every point is snapped to its closest node only once. If the
+   * contraction hierarchy has been prepared, the profile is the default
+   * one and no weights are changed by updates, its buckets are used;
+   * otherwise one search per start point runs until all targets are
+   * reached. The searches run in parallel on the common fork-join pool.
+   *
+   * @param from start map points
+   * @param to target map points
+   * @param profile the profile
+   *
+   * @return the weight from from[i] to to[j] at [i][j], -1 if there is
+   * no route
+   */
+  public int[][] distanceMatrix(MapPoint[] from, MapPoint[] to, Profile profile) {
+    MapPoint[] points = Arrays.copyOf(from, from.length + to.length);
+    System.arraycopy(to, 0, points, from.length, to.length);
+    int[] nodes = snap(profile, points);
+    int[] sources = Arrays.copyOf(nodes, from.length);
+    int[] targets = Arrays.copyOfRange(nodes, from.length, nodes.length);
+    CompactGraph graph = graphs[profile.ordinal()];
+    ContractionHierarchy contractionHierarchy = mapGraph.getContractionHierarchy();
+    if (contractionHierarchy != null && graph == baseGraphs[Profile.DEFAULT.ordinal()])
+      return contractionHierarchy.distanceMatrix(sources, targets, ForkJoinPool.commonPool(), contexts);
+    return DistanceMatrix.compute(graph, components[profile.ordinal()], sources, targets,
+        ForkJoinPool.commonPool(), contexts);
+  }
+
+  public Isochrone reachable(MapPoint from, int maxDistance) {
+    return reachable(from, maxDistance, Profile.DEFAULT);
+  }
+
+  /**
+   * This method finds all nodes that can be reached from the node closest
+   * to a map point within a weight limit of a profile.
+   *
+   * @param from start map point
+   * @param maxDistance the limit, in meters or in tenths of a second
+   * (see Profile)
+   * @param profile the profile
+   *
+   * @return the reached nodes and their weights
+   */
+  public Isochrone reachable(MapPoint from, int maxDistance, Profile profile) {
+    int fromNode = mapGraph.snap(from);
+    if (componentSnapping && !components[profile.ordinal()].inLargest(fromNode))
+      fromNode = mapGraph.snapToLargestComponent(from, profile);
+    CompactGraph graph = graphs[profile.ordinal()];
+    SearchContext context = contexts.acquire();
+    try {
+      return Isochrone.search(graph, context, fromNode, maxDistance);
+    } finally {
+      contexts.release(context);
+    }
+  }
+
+  public Isochrone[] reachable(MapPoint[] from, int maxDistance) {
+    return reachable(from, maxDistance, Profile.DEFAULT);
+  }
+
+  /**
+   * This method finds the reachable nodes for many start points. The
+   * searches run in parallel on the common fork-join pool.
+   *
+   * @param from start map points
+   * @param maxDistance the limit, in meters or in tenths of a second
+   * (see Profile)
+   * @param profile the profile
+   *
+   * @return the reached nodes of each start point
+   */
+  public Isochrone[] reachable(MapPoint[] from, int maxDistance, Profile profile) {
+    return Parallel.submit(ForkJoinPool.commonPool(), () -> Arrays.stream(from).parallel()
+        .map(p -> reachable(p, maxDistance, profile)).toArray(Isochrone[]::new));
+  }
+}
@@ -1,3 +1,5 @@
+import java.util.Optional;
+
 /**
  * The class implements the result of a search
  * for a shortest path.
@@ -21,6 +23,19 @@ public class RoutingResult {
     return distance;
   }
   
+  /**
+   * The counters of the search, if statistics are enabled
+   */
+  private Optional<SearchStatistics> statistics = Optional.empty();
+
+  public Optional<SearchStatistics> getStatistics () {
+    return statistics;
+  }
+
+  void setStatistics (SearchStatistics statistics) {
+    this.statistics = Optional.of(statistics);
+  }
+  
   public RoutingResult (OSMNode[] path, int distance) {
     this.path = path;
     this.distance = distance;
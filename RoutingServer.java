@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class implements an HTTP routing service on the HTTP server of the
+ * JDK. All requests share one frozen graph.
+ *
+ * GET /route?from=lat,lon&amp;to=lat,lon[&amp;mode=ASTAR][&amp;profile=CAR][&amp;format=polyline]
+ * returns the distance (or, for the fastest profiles, the travel time in
+ * tenths of a second) and the path of the route as JSON, the path either
+ * as an array of [lat, lon] pairs or as an encoded polyline.
+ * GET /stats returns the number of requests and latency percentiles.
+ *
+ * Every request runs on its own virtual thread if the JDK supports them,
+ * otherwise on a thread of a cached pool. At most 'maxConcurrent' routes
+ * are computed at the same time and at most 'maxQueued' further requests
+ * wait; requests beyond that are rejected with status 503 right away.
+ *
+ * Usage: java RoutingServer map.osm|map.graph [port]
+ */
+public class RoutingServer {
+  /**
+   * The number of most recent requests the latency percentiles refer to
+   */
+  private static final int LATENCY_WINDOW = 1 << 14;
+
+  private MapGraph graph;
+
+  private HttpServer server;
+
+  private ExecutorService executor;
+
+  /**
+   * Permits for the requests that are computed or waiting
+   */
+  private Semaphore admitted;
+
+  /**
+   * Permits for the requests that are computed
+   */
+  private Semaphore running;
+
+  private LongAdder requests = new LongAdder();
+  private LongAdder rejected = new LongAdder();
+
+  /**
+   * The latencies of the most recent requests in nanoseconds, written
+   * round-robin
+   */
+  private AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+  private AtomicLong latencyCount = new AtomicLong();
+
+  /**
+   * This constructor creates a server; it is started by start().
+   *
+   * @param graph the graph
+   * @param port the port to listen on, 0 for any free port
+   * @param maxConcurrent the number of routes computed at the same time
+   * @param maxQueued the number of requests that may wait
+   */
+  public RoutingServer(MapGraph graph, int port, int maxConcurrent, int maxQueued) throws IOException {
+    this.graph = graph;
+    graph.freeze();
+    admitted = new Semaphore(maxConcurrent + maxQueued);
+    running = new Semaphore(maxConcurrent);
+    executor = newExecutor();
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.setExecutor(executor);
+    server.createContext("/route", this::handleRoute);
+    server.createContext("/stats", this::handleStats);
+  }
+
+  /**
+   * This method creates an executor that starts a virtual thread per task.
+   * Virtual threads are only available from Java 21 on, so the executor is
+   * looked up by reflection; on older versions, a cached pool is used.
+   */
+  private static ExecutorService newExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * This method stops the server.
+   *
+   * @param delay the maximum time in seconds to wait for running requests
+   */
+  public void stop(int delay) {
+    server.stop(delay);
+    executor.shutdown();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  private void handleRoute(HttpExchange exchange) throws IOException {
+    long start = System.nanoTime();
+    requests.increment();
+    if (!admitted.tryAcquire()) {
+      rejected.increment();
+      respond(exchange, 503, error("Too many requests"));
+      return;
+    }
+    try {
+      running.acquireUninterruptibly();
+      try {
+        route(exchange);
+      } finally {
+        running.release();
+      }
+    } finally {
+      admitted.release();
+      recordLatency(System.nanoTime() - start);
+    }
+  }
+
+  private void route(HttpExchange exchange) throws IOException {
+    MapPoint from;
+    MapPoint to;
+    SearchMode mode;
+    Profile profile;
+    boolean polyline;
+    try {
+      Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+      from = point(parameters.get("from"));
+      to = point(parameters.get("to"));
+      mode = SearchMode.valueOf(parameters.getOrDefault("mode", "ASTAR").toUpperCase(Locale.ROOT));
+      profile = Profile.valueOf(parameters.getOrDefault("profile", "DEFAULT").toUpperCase(Locale.ROOT));
+      polyline = "polyline".equals(parameters.get("format"));
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, error(e.getMessage()));
+      return;
+    }
+
+    RoutingResult rr;
+    try {
+      rr = graph.route(from, to, mode, profile);
+    } catch (IllegalStateException e) {
+      respond(exchange, 400, error(e.getMessage()));
+      return;
+    } catch (RuntimeException e) {
+      respond(exchange, 500, error("Internal error"));
+      return;
+    }
+    if (rr == null) {
+      respond(exchange, 404, error("No route"));
+      return;
+    }
+
+    StringBuilder json = new StringBuilder();
+    json.append(profile.isFastest() ? "{\"time\":" : "{\"distance\":").append(rr.getDistance());
+    if (polyline)
+      json.append(",\"polyline\":").append(jsonString(RouteWriter.encodePolyline(rr.getPath())));
+    else {
+      json.append(",\"path\":[");
+      OSMNode[] path = rr.getPath();
+      for (int i = 0; i < path.length; i++) {
+        if (i > 0)
+          json.append(',');
+        json.append('[').append(path[i].getLocation().getLat()).append(',')
+            .append(path[i].getLocation().getLon()).append(']');
+      }
+      json.append(']');
+    }
+    json.append('}');
+    respond(exchange, 200, json.toString());
+  }
+
+  private static Map<String, String> parameters(String query) {
+    Map<String, String> parameters = new HashMap<>();
+    if (query == null)
+      return parameters;
+    for (String parameter : query.split("&")) {
+      int equals = parameter.indexOf('=');
+      if (equals > 0)
+        parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+            URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+
+  private static MapPoint point(String value) {
+    if (value == null)
+      throw new IllegalArgumentException("Parameters 'from' and 'to' are required");
+    String[] parts = value.split(",");
+    if (parts.length != 2)
+      throw new IllegalArgumentException("Invalid point: " + value);
+    double lat = Double.parseDouble(parts[0].trim());
+    double lon = Double.parseDouble(parts[1].trim());
+    if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180))
+      throw new IllegalArgumentException("Invalid point: " + value);
+    return new MapPoint(lat, lon);
+  }
+
+  private void recordLatency(long nanos) {
+    long i = latencyCount.getAndIncrement();
+    latencies.set((int) (i % LATENCY_WINDOW), nanos);
+  }
+
+  private void handleStats(HttpExchange exchange) throws IOException {
+    int count = (int) Math.min(latencyCount.get(), LATENCY_WINDOW);
+    long[] sorted = new long[count];
+    for (int i = 0; i < count; i++)
+      sorted[i] = latencies.get(i);
+    Arrays.sort(sorted);
+    StringBuilder json = new StringBuilder();
+    json.append("{\"requests\":").append(requests.sum()).append(",\"rejected\":").append(rejected.sum());
+    json.append(",\"latencyMillis\":{");
+    double[] percentiles = { 50, 90, 99, 99.9, 100 };
+    String[] names = { "p50", "p90", "p99", "p999", "max" };
+    for (int i = 0; i < percentiles.length; i++) {
+      if (i > 0)
+        json.append(',');
+      long nanos = count == 0 ? 0 : sorted[(int) Math.min(count - 1, Math.ceil(percentiles[i] / 100 * count) - 1)];
+      json.append('"').append(names[i]).append("\":").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+    json.append("}}");
+    respond(exchange, 200, json.toString());
+  }
+
+  private static String error(String message) {
+    return "{\"error\":" + jsonString(message == null ? "Invalid request" : message) + "}";
+  }
+
+  /**
+   * This method quotes a string for JSON: quotes, backslashes and control
+   * characters are escaped.
+   *
+   * @param value the string
+   *
+   * @return the JSON string literal
+   */
+  static String jsonString(String value) {
+    StringBuilder json = new StringBuilder(value.length() + 2);
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20)
+            json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+          else
+            json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String fileName = args.length > 0 ? args[0] : "map.osm";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+    System.out.println("Reading OSM data...");
+    MapGraph g = fileName.endsWith(".graph") ? GraphSnapshot.read(fileName) : MapParser.parseFile(fileName);
+    int processors = Runtime.getRuntime().availableProcessors();
+    RoutingServer server = new RoutingServer(g, port, processors, 64 * processors);
+    server.start();
+    System.out.println("Listening on port " + server.getPort());
+  }
+}
@@ -0,0 +1,264 @@
+import java.util.Arrays;
+import heap.IndexedIntHeap;
+
+/**
+ * This class holds the state of a search so that it can be reused by the
+ * next search instead of being allocated again. A bidirectional search
+ * uses two states, one per direction; the second one is only allocated
+ * when it is needed.
+ *
+ * A context must only be used by one thread at a time; RoutingEngine
+ * hands out contexts from a pool.
+ */
+class SearchContext {
+  static final int INFINITY = Integer.MAX_VALUE;
+
+  private int nodeCount;
+
+  private SearchState forward;
+
+  private SearchState backward;
+
+  /**
+   * Whether the search of the current query has been restarted
+   */
+  private boolean restarted;
+
+  SearchContext(int nodeCount) {
+    this.nodeCount = nodeCount;
+    forward = new SearchState(nodeCount);
+  }
+
+  /**
+   * This method resets the counters of both states for a new query.
+   */
+  void startQuery() {
+    forward.resetCounters();
+    if (backward != null)
+      backward.resetCounters();
+    restarted = false;
+  }
+
+  void setRestarted() {
+    restarted = true;
+  }
+
+  /**
+   * This method creates the statistics of the current query from the
+   * counters of both states.
+   *
+   * @param mode the search mode
+   * @param snapNanos time spent snapping the points to nodes
+   * @param searchNanos time spent searching
+   *
+   * @return the statistics
+   */
+  SearchStatistics statistics(SearchMode mode, long snapNanos, long searchNanos) {
+    SearchStatistics statistics = new SearchStatistics(mode, restarted, snapNanos, searchNanos);
+    for (SearchState state : new SearchState[] { forward, backward })
+      if (state != null)
+        statistics.add(state.settled, state.relaxations, state.inserts, state.decreaseKeys, state.polls);
+    return statistics;
+  }
+
+  /**
+   * This method resets the forward state for a new search.
+   *
+   * @return the forward state
+   */
+  SearchState forward() {
+    forward.reset();
+    return forward;
+  }
+
+  /**
+   * This method resets the backward state for a new search.
+   *
+   * @return the backward state
+   */
+  SearchState backward() {
+    if (backward == null)
+      backward = new SearchState(nodeCount);
+    backward.reset();
+    return backward;
+  }
+
+  /**
+   * This class holds the labels of the nodes and the priority queue of
+   * one search. Instead of filling the arrays for every search, each label
+   * carries the number of the search that set it; labels of older
+   * searches count as unset. Resetting therefore takes time proportional
+   * to the number of nodes left in the queue only.
+   *
+   * The operations on the queue are counted for SearchStatistics;
+   * counting costs next to nothing compared to the operations.
+   */
+  static class SearchState {
+    private int[] dist;
+
+    /**
+     * The node over which a node was reached
+     */
+    private int[] prev;
+
+    /**
+     * The edge over which a node was reached
+     */
+    private int[] edge;
+
+    /**
+     * The number of the search that has set the labels of a node
+     */
+    private int[] stamps;
+
+    private int stamp;
+
+    private IndexedIntHeap heap;
+
+    /*
+     * The counters of the current query. A search that is reset starts
+     * settling nodes again, so only 'settled' is reset with it.
+     */
+    private int settled;
+    private int relaxations;
+    private int inserts;
+    private int decreaseKeys;
+    private int polls;
+
+    SearchState(int nodeCount) {
+      dist = new int[nodeCount];
+      prev = new int[nodeCount];
+      edge = new int[nodeCount];
+      stamps = new int[nodeCount];
+      heap = new IndexedIntHeap(nodeCount);
+    }
+
+    private void reset() {
+      if (++stamp == Integer.MAX_VALUE) {
+        /*
+         * After about two billion searches the numbers wrap around.
+         */
+        Arrays.fill(stamps, 0);
+        stamp = 1;
+      }
+      heap.clear();
+      settled = 0;
+    }
+
+    private void resetCounters() {
+      settled = 0;
+      relaxations = 0;
+      inserts = 0;
+      decreaseKeys = 0;
+      polls = 0;
+    }
+
+    /**
+     * Returns the distance of a node or INFINITY if the node has not
+     * been reached.
+     *
+     * @param node node index
+     *
+     * @return the distance
+     */
+    int getDist(int node) {
+      return stamps[node] == stamp ? dist[node] : INFINITY;
+    }
+
+    void setDist(int node, int dist) {
+      stamps[node] = stamp;
+      this.dist[node] = dist;
+    }
+
+    boolean reached(int node) {
+      return stamps[node] == stamp;
+    }
+
+    int getPrev(int node) {
+      return prev[node];
+    }
+
+    void setPrev(int node, int prev) {
+      this.prev[node] = prev;
+    }
+
+    int getEdge(int node) {
+      return edge[node];
+    }
+
+    void setEdge(int node, int edge) {
+      this.edge[node] = edge;
+    }
+
+    /**
+     * This method assembles the path to a node by tracing the predecessors
+     * backwards.
+     *
+     * @param graph the frozen graph
+     * @param fromNode index of the start node of the search
+     * @param toNode index of the node the path leads to
+     *
+     * @return the nodes of the path
+     */
+    OSMNode[] path(CompactGraph graph, int fromNode, int toNode) {
+      int length = 1;
+      for (int node = toNode; node != fromNode; node = prev[node])
+        length++;
+      OSMNode[] path = new OSMNode[length];
+      int node = toNode;
+      for (int i = length - 1; i >= 0; i--) {
+        path[i] = graph.getNode(node);
+        node = prev[node];
+      }
+      return path;
+    }
+
+    IndexedIntHeap getHeap() {
+      return heap;
+    }
+
+    void insert(int node, int key) {
+      inserts++;
+      heap.insert(node, key);
+    }
+
+    void decreaseKey(int node, int key) {
+      decreaseKeys++;
+      heap.decreaseKey(node, key);
+    }
+
+    /**
+     * This method inserts a node into the queue or lowers its key.
+     *
+     * @param node node index
+     * @param key the key
+     */
+    void push(int node, int key) {
+      if (heap.contains(node))
+        decreaseKey(node, key);
+      else
+        insert(node, key);
+    }
+
+    /**
+     * This method removes the node with the smallest key from the queue,
+     * which settles it.
+     *
+     * @return the node
+     */
+    int poll() {
+      polls++;
+      settled++;
+      return heap.poll();
+    }
+
+    /**
+     * This method counts the edges of a settled node that are relaxed.
+     *
+     * @param edges number of edges
+     */
+    void countRelaxations(int edges) {
+      relaxations += edges;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class keeps search contexts for reuse. A thread takes a context
+ * for the duration of a query and returns it afterwards; a new context is
+ * only created if all existing ones are in use. The contexts are not bound
+ * to threads, so many short-lived (for example virtual) threads share the
+ * contexts of the peak number of concurrent queries.
+ */
+class SearchContextPool {
+  private int nodeCount;
+
+  private ConcurrentLinkedQueue<SearchContext> idle = new ConcurrentLinkedQueue<>();
+
+  SearchContextPool(int nodeCount) {
+    this.nodeCount = nodeCount;
+  }
+
+  SearchContext acquire() {
+    SearchContext context = idle.poll();
+    return context != null ? context : new SearchContext(nodeCount);
+  }
+
+  void release(SearchContext context) {
+    idle.offer(context);
+  }
+}
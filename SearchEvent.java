@@ -0,0 +1,64 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This class is the Java Flight Recorder event of a query for which
+ * statistics have been collected. It is only written if a recording has
+ * enabled it.
+ */
+@Name("nogivan.Search")
+@Label("Route Search")
+@Category("Nogivan")
+@Description("Counters of a single route query")
+@StackTrace(false)
+class SearchEvent extends Event {
+  @Label("Mode")
+  String mode;
+
+  @Label("Settled Nodes")
+  long settled;
+
+  @Label("Edge Relaxations")
+  long relaxations;
+
+  @Label("Heap Inserts")
+  long heapInserts;
+
+  @Label("Heap Decrease-Keys")
+  long heapDecreaseKeys;
+
+  @Label("Heap Polls")
+  long heapPolls;
+
+  @Label("Restarted")
+  boolean restarted;
+
+  @Label("Snapping Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long snapNanos;
+
+  @Label("Search Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long searchNanos;
+
+  static void commit(SearchStatistics statistics) {
+    SearchEvent event = new SearchEvent();
+    if (!event.isEnabled())
+      return;
+    event.mode = statistics.getMode().name();
+    event.settled = statistics.getSettled();
+    event.relaxations = statistics.getRelaxations();
+    event.heapInserts = statistics.getHeapInserts();
+    event.heapDecreaseKeys = statistics.getHeapDecreaseKeys();
+    event.heapPolls = statistics.getHeapPolls();
+    event.restarted = statistics.isRestarted();
+    event.snapNanos = statistics.getSnapNanos();
+    event.searchNanos = statistics.getSearchNanos();
+    event.commit();
+  }
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class sums up the statistics of all queries of the process for
+ * which statistics have been collected. The sums are kept in LongAdders,
+ * so concurrent queries do not contend for a single counter.
+ */
+public class SearchMetrics {
+  private static final LongAdder queries = new LongAdder();
+  private static final LongAdder settled = new LongAdder();
+  private static final LongAdder relaxations = new LongAdder();
+  private static final LongAdder heapInserts = new LongAdder();
+  private static final LongAdder heapDecreaseKeys = new LongAdder();
+  private static final LongAdder heapPolls = new LongAdder();
+  private static final LongAdder restarts = new LongAdder();
+  private static final LongAdder snapNanos = new LongAdder();
+  private static final LongAdder searchNanos = new LongAdder();
+
+  private SearchMetrics() {
+  }
+
+  /**
+   * This method adds the statistics of a query to the sums and records
+   * a SearchEvent for Java Flight Recorder.
+   *
+   * @param statistics the statistics of the query
+   */
+  static void record(SearchStatistics statistics) {
+    queries.increment();
+    settled.add(statistics.getSettled());
+    relaxations.add(statistics.getRelaxations());
+    heapInserts.add(statistics.getHeapInserts());
+    heapDecreaseKeys.add(statistics.getHeapDecreaseKeys());
+    heapPolls.add(statistics.getHeapPolls());
+    if (statistics.isRestarted())
+      restarts.increment();
+    snapNanos.add(statistics.getSnapNanos());
+    searchNanos.add(statistics.getSearchNanos());
+    SearchEvent.commit(statistics);
+  }
+
+  public static long getQueries() {
+    return queries.sum();
+  }
+
+  public static long getSettled() {
+    return settled.sum();
+  }
+
+  public static long getRelaxations() {
+    return relaxations.sum();
+  }
+
+  public static long getHeapInserts() {
+    return heapInserts.sum();
+  }
+
+  public static long getHeapDecreaseKeys() {
+    return heapDecreaseKeys.sum();
+  }
+
+  public static long getHeapPolls() {
+    return heapPolls.sum();
+  }
+
+  public static long getRestarts() {
+    return restarts.sum();
+  }
+
+  public static long getSnapNanos() {
+    return snapNanos.sum();
+  }
+
+  public static long getSearchNanos() {
+    return searchNanos.sum();
+  }
+
+  /**
+   * This method sets all sums to zero.
+   */
+  public static void reset() {
+    for (LongAdder adder : new LongAdder[] { queries, settled, relaxations, heapInserts, heapDecreaseKeys,
+        heapPolls, restarts, snapNanos, searchNanos })
+      adder.reset();
+  }
+}
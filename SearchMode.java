@@ -0,0 +1,35 @@
+/**
+ * This enumeration lists the algorithms that can be used to
+ * search for a route.
+ */
+public enum SearchMode {
+  /**
+   * Dijkstra's algorithm from the start node, guided by the
+   * air distance to the target node
+   */
+  DIJKSTRA,
+
+  /**
+   * A* search from the start node with the scaled air distance to the
+   * target node as lower bound; it settles each node at most once
+   */
+  ASTAR,
+
+  /**
+   * Dijkstra's algorithm from the start node and, on the reverse
+   * edges, from the target node until both searches meet
+   */
+  BIDIRECTIONAL,
+
+  /**
+   * Bidirectional search in the contraction hierarchy; requires
+   * MapGraph.prepareContractionHierarchy() to be called first
+   */
+  CONTRACTION_HIERARCHY,
+
+  /**
+   * A* search with lower bounds from the distances to and from a few
+   * landmarks; requires MapGraph.prepareLandmarks() to be called first
+   */
+  ALT
+}
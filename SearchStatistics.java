@@ -0,0 +1,102 @@
+/**
+ * This class holds the counters of a single query. Statistics are only
+ * collected if they have been enabled with
+ * RoutingEngine.setStatisticsEnabled(); they are then attached to the
+ * RoutingResult and added to the process-wide SearchMetrics.
+ *
+ * The counters of a bidirectional search are the sums of both
+ * directions. A route taken from a RouteCache has no search counters.
+ */
+public class SearchStatistics {
+  private SearchMode mode;
+
+  public SearchMode getMode() {
+    return mode;
+  }
+
+  /**
+   * The number of nodes settled by the search; if the search has been
+   * restarted, only those settled after the restart
+   */
+  private long settled;
+
+  public long getSettled() {
+    return settled;
+  }
+
+  /**
+   * The number of edges relaxed from settled nodes
+   */
+  private long relaxations;
+
+  public long getRelaxations() {
+    return relaxations;
+  }
+
+  private long heapInserts;
+
+  public long getHeapInserts() {
+    return heapInserts;
+  }
+
+  private long heapDecreaseKeys;
+
+  public long getHeapDecreaseKeys() {
+    return heapDecreaseKeys;
+  }
+
+  private long heapPolls;
+
+  public long getHeapPolls() {
+    return heapPolls;
+  }
+
+  /**
+   * Whether the search of SearchMode.DIJKSTRA has restarted after
+   * reaching the target node
+   */
+  private boolean restarted;
+
+  public boolean isRestarted() {
+    return restarted;
+  }
+
+  /**
+   * The time spent finding the nodes closest to the points
+   */
+  private long snapNanos;
+
+  public long getSnapNanos() {
+    return snapNanos;
+  }
+
+  /**
+   * The time spent searching, including the lookup in the route cache
+   */
+  private long searchNanos;
+
+  public long getSearchNanos() {
+    return searchNanos;
+  }
+
+  SearchStatistics(SearchMode mode, boolean restarted, long snapNanos, long searchNanos) {
+    this.mode = mode;
+    this.restarted = restarted;
+    this.snapNanos = snapNanos;
+    this.searchNanos = searchNanos;
+  }
+
+  void add(long settled, long relaxations, long heapInserts, long heapDecreaseKeys, long heapPolls) {
+    this.settled += settled;
+    this.relaxations += relaxations;
+    this.heapInserts += heapInserts;
+    this.heapDecreaseKeys += heapDecreaseKeys;
+    this.heapPolls += heapPolls;
+  }
+
+  @Override public String toString() {
+    return mode + ": settled = " + settled + ", relaxations = " + relaxations + ", inserts = " + heapInserts
+        + ", decreaseKeys = " + heapDecreaseKeys + ", polls = " + heapPolls + ", restarted = " + restarted
+        + ", snap = " + snapNanos / 1000 + " us, search = " + searchNanos / 1000 + " us";
+  }
+}
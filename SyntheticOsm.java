@@ -0,0 +1,98 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class generates a synthetic OSM file: a street grid with slightly
+ * displaced nodes, one-way streets, names, nodes that are not part of any
+ * way and ways that are not roads. The output only depends on the size
+ * and the seed, so benchmarks can run offline and reproducibly.
+ *
+ * The grid is centered near Garching, where the queries of Nogivan are.
+ */
+public class SyntheticOsm {
+  static final double LAT_SOUTH = 48.2;
+  static final double LON_WEST = 11.6;
+
+  /**
+   * The distance between two rows and two columns in degrees (about
+   * 100 meters)
+   */
+  static final double LAT_STEP = 0.0009;
+  static final double LON_STEP = 0.00135;
+
+  private static final String[] HIGHWAYS = { "residential", "primary", "secondary", "service", "footway",
+      "cycleway", "track", "proposed" };
+
+  private SyntheticOsm() {
+  }
+
+  /**
+   * This method writes a grid of size x size nodes.
+   *
+   * @param fileName name of the OSM file
+   * @param size number of rows and columns
+   * @param seed seed of the random numbers
+   */
+  public static void write(String fileName, int size, long seed) throws IOException {
+    Random random = new Random(seed);
+    try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName), 1 << 16))) {
+      out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      out.println("<osm version=\"0.6\" generator=\"SyntheticOsm\">");
+      long[][] ids = new long[size][size];
+      long id = 1000;
+      for (int i = 0; i < size; i++)
+        for (int j = 0; j < size; j++) {
+          id += 1 + random.nextInt(5);
+          ids[i][j] = id;
+          double lat = LAT_SOUTH + i * LAT_STEP + (random.nextDouble() - 0.5) * LAT_STEP / 3;
+          double lon = LON_WEST + j * LON_STEP + (random.nextDouble() - 0.5) * LON_STEP / 3;
+          out.printf(Locale.ROOT, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\" version=\"1\"/>%n", id, lat, lon);
+          if (random.nextInt(20) == 0)
+            out.printf(Locale.ROOT, "  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"><tag k=\"amenity\" v=\"bench\"/></node>%n",
+                id + 1_000_000_000L, lat, lon);
+        }
+
+      long wayId = 1;
+      /*
+       * Rows are split into ways of random length; a tenth of the
+       * segments is left out, and some ways are one-way streets.
+       */
+      for (int row = 0; row < 2 * size; row++) {
+        boolean horizontal = row < size;
+        int line = row % size;
+        for (int k = 0; k < size - 1;) {
+          int length = 1 + random.nextInt(6);
+          int end = Math.min(size - 1, k + length);
+          if (random.nextInt(10) != 0) {
+            out.printf("  <way id=\"%d\">%n", wayId++);
+            for (int m = k; m <= end; m++)
+              out.printf("    <nd ref=\"%d\"/>%n", horizontal ? ids[line][m] : ids[m][line]);
+            out.printf("    <tag k=\"highway\" v=\"%s\"/>%n", HIGHWAYS[random.nextInt(HIGHWAYS.length)]);
+            if (random.nextInt(5) == 0)
+              out.println("    <tag k=\"oneway\" v=\"yes\"/>");
+            if (horizontal)
+              out.printf("    <tag k=\"name\" v=\"Street &amp; %d\"/>%n", line);
+            out.println("  </way>");
+          }
+          k = end;
+        }
+      }
+      out.printf("  <way id=\"%d\"><nd ref=\"%d\"/><nd ref=\"%d\"/><tag k=\"building\" v=\"yes\"/></way>%n",
+          wayId, ids[0][0], ids[size - 1][size - 1]);
+      out.println("</osm>");
+    }
+  }
+
+  /**
+   * Usage: java SyntheticOsm file.osm [size] [seed]
+   */
+  public static void main(String[] args) throws IOException {
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+    write(args[0], size, seed);
+  }
+}
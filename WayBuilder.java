@@ -0,0 +1,35 @@
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * This class collects the tags and nodes of a way while it is read and
+ * builds the OSMWay at its end (see MapParser.beginWay()).
+ */
+class WayBuilder {
+  private BiConsumer<String, String> addTag;
+
+  public BiConsumer<String, String> getAddTag() {
+    return addTag;
+  }
+
+  private LongConsumer addWaypoint;
+
+  public LongConsumer getAddWaypoint() {
+    return addWaypoint;
+  }
+
+  private Function<Void, Optional<OSMWay>> finish;
+
+  public Function<Void, Optional<OSMWay>> getFinish() {
+    return finish;
+  }
+
+  public WayBuilder(BiConsumer<String, String> addTag, LongConsumer addWaypoint,
+      Function<Void, Optional<OSMWay>> finish) {
+    this.addTag = addTag;
+    this.addWaypoint = addWaypoint;
+    this.finish = finish;
+  }
+}
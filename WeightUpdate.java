@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class collects closures and weight overrides of ways and edges,
+ * for example because of an incident. The changes are applied together
+ * by RoutingEngine.update(), which leaves the graph untouched: it copies
+ * the weights, changes the copy and lets new queries use it, while the
+ * queries that are already running finish on the old weights.
+ *
+ * The changes apply to the weights of every Profile. Weights are
+ * multiplied by factors of at least 1, so that the straight-line distance
+ * and the landmarks remain lower bounds, and edges that a profile may not
+ * use stay closed. Changes refer to the original weights and replace
+ * earlier changes of the same edges; the reset methods take them back.
+ */
+public class WeightUpdate {
+  /**
+   * This interface is implemented by a single change.
+   */
+  private interface Change {
+    /**
+     * This method applies the change.
+     *
+     * @param graph the graph with the original weights
+     * @param edgesByWay the edges of each way
+     * @param weights the weights to change
+     */
+    void apply(CompactGraph graph, Map<Long, int[]> edgesByWay, int[] weights);
+  }
+
+  private List<Change> changes = new ArrayList<>();
+
+  /**
+   * This method closes all edges of a way in both directions.
+   *
+   * @param wayId id of the OSMWay
+   *
+   * @return this update
+   */
+  public WeightUpdate closeWay(long wayId) {
+    changes.add((graph, edgesByWay, weights) -> {
+      for (int edge : edges(edgesByWay, wayId))
+        weights[edge] = CompactGraph.CLOSED;
+    });
+    return this;
+  }
+
+  /**
+   * This method multiplies the weights of all edges of a way by a factor,
+   * for example to slow down traffic on a street.
+   *
+   * @param wayId id of the OSMWay
+   * @param factor the factor, at least 1
+   *
+   * @return this update
+   */
+  public WeightUpdate scaleWay(long wayId, double factor) {
+    if (!(factor >= 1))
+      throw new IllegalArgumentException("The factor must be at least 1");
+    changes.add((graph, edgesByWay, weights) -> {
+      for (int edge : edges(edgesByWay, wayId))
+        weights[edge] = scale(graph.getWeight(edge), factor);
+    });
+    return this;
+  }
+
+  /**
+   * This method takes back the changes of all edges of a way.
+   *
+   * @param wayId id of the OSMWay
+   *
+   * @return this update
+   */
+  public WeightUpdate resetWay(long wayId) {
+    changes.add((graph, edgesByWay, weights) -> {
+      for (int edge : edges(edgesByWay, wayId))
+        weights[edge] = graph.getWeight(edge);
+    });
+    return this;
+  }
+
+  /**
+   * This method closes the edge between two nodes. Only the given
+   * direction is closed.
+   *
+   * @param fromId id of the start node
+   * @param toId id of the target node
+   *
+   * @return this update
+   */
+  public WeightUpdate closeEdge(long fromId, long toId) {
+    changes.add((graph, edgesByWay, weights) -> weights[edge(graph, fromId, toId)] = CompactGraph.CLOSED);
+    return this;
+  }
+
+  /**
+   * This method multiplies the weight of the edge between two nodes by a
+   * factor.
+   *
+   * @param fromId id of the start node
+   * @param toId id of the target node
+   * @param factor the factor, at least 1
+   *
+   * @return this update
+   */
+  public WeightUpdate scaleEdge(long fromId, long toId, double factor) {
+    if (!(factor >= 1))
+      throw new IllegalArgumentException("The factor must be at least 1");
+    changes.add((graph, edgesByWay, weights) -> {
+      int edge = edge(graph, fromId, toId);
+      weights[edge] = scale(graph.getWeight(edge), factor);
+    });
+    return this;
+  }
+
+  /**
+   * This method takes back the changes of the edge between two nodes.
+   *
+   * @param fromId id of the start node
+   * @param toId id of the target node
+   *
+   * @return this update
+   */
+  public WeightUpdate resetEdge(long fromId, long toId) {
+    changes.add((graph, edgesByWay, weights) -> {
+      int edge = edge(graph, fromId, toId);
+      weights[edge] = graph.getWeight(edge);
+    });
+    return this;
+  }
+
+  private static int scale(int weight, double factor) {
+    if (weight == CompactGraph.CLOSED)
+      return weight;
+    return (int) Math.min(Math.ceil(weight * factor), CompactGraph.CLOSED - 1);
+  }
+
+  private static int[] edges(Map<Long, int[]> edgesByWay, long wayId) {
+    int[] edges = edgesByWay.get(wayId);
+    if (edges == null)
+      throw new IllegalArgumentException("There is no way " + wayId);
+    return edges;
+  }
+
+  private static int edge(CompactGraph graph, long fromId, long toId) {
+    int from = graph.indexOf(fromId);
+    int to = graph.indexOf(toId);
+    int edge = from >= 0 && to >= 0 ? graph.findEdge(from, to) : -1;
+    if (edge < 0)
+      throw new IllegalArgumentException("There is no edge " + fromId + " -> " + toId);
+    return edge;
+  }
+
+  /**
+   * This method applies the changes in their order.
+   *
+   * @param graph the graph with the original weights
+   * @param edgesByWay the edges of each way (see
+   * CompactGraph.edgesByWay())
+   * @param weights the weights to change
+   */
+  void apply(CompactGraph graph, Map<Long, int[]> edgesByWay, int[] weights) {
+    for (Change change : changes)
+      change.apply(graph, edgesByWay, weights);
+  }
+}
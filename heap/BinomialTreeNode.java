@@ -1,8 +1,11 @@
 package heap;
 
-import java.util.Optional;
-import java.util.function.Consumer;
-
+/**
+ * This class implements a node of a binomial tree. The children of a node
+ * are kept in a singly linked list, ordered by decreasing rank, so linking
+ * two trees does not copy anything. A node also serves as the handle of
+ * its element: if an element moves up, its node is moved in the tree.
+ */
 public class BinomialTreeNode<T extends Comparable<T>> {
   private T element;
 
@@ -10,71 +13,78 @@ public class BinomialTreeNode<T extends Comparable<T>> {
     return element;
   }
 
-  private BinomialTreeNode<T>[] children;
-
-  private Optional<BinomialTreeNode<T>> mother;
+  private BinomialTreeNode<T> mother;
 
-  private Optional<Consumer<BinomialTreeNode<T>>> propagateRootChange;
+  /**
+   * The child of highest rank
+   */
+  private BinomialTreeNode<T> child;
 
-  private BinomialHeapHandle<T> handle;
+  /**
+   * The next sibling, which has the next lower rank
+   */
+  private BinomialTreeNode<T> sibling;
 
-  BinomialHeapHandle<T> getHandle () {
-    return handle;
-  }
+  private int rank;
 
-  void setPropagateRootChange (Optional<Consumer<BinomialTreeNode<T>>> propagateRootChange) {
-    this.propagateRootChange = propagateRootChange;
+  BinomialTreeNode<T> getMother () {
+    return mother;
   }
 
-  void setPropagateRootChange (Consumer<BinomialTreeNode<T>> propagateRootChange) {
-    setPropagateRootChange(Optional.of(propagateRootChange));
+  BinomialTreeNode<T> getSibling () {
+    return sibling;
   }
 
   void replaceWithSmallerElement (T element) {
     if (element.compareTo(this.element) > 0)
       throw new RuntimeException("Do you know what 'smaller' means?");
     this.element = element;
-    siftUp();
+    while (mother != null && mother.element.compareTo(this.element) > 0)
+      swapWithMother();
   }
 
-  boolean validTree (Optional<BinomialTreeNode<T>> mother) {
-    if(!this.mother.equals(mother))
+  boolean validTree (BinomialTreeNode<T> mother) {
+    if (this.mother != mother)
       throw new RuntimeException();
-    Optional<Integer> rankLast = Optional.empty();
-    for (int i = 0; i < children.length; i++) {
-      if(!children[i].validTree(Optional.of(this)))
+    int rankExpected = rank - 1;
+    for (BinomialTreeNode<T> c = child; c != null; c = c.sibling) {
+      if (!c.validTree(this))
         return false;
-      if (rankLast.isPresent() && children[i].rank() <= rankLast.get())
+      if (c.rank != rankExpected--)
         return false;
-      if(children[i].getElement().compareTo(element) < 0)
+      if (c.getElement().compareTo(element) < 0)
         return false;
-      rankLast = Optional.of(children[i].rank());
     }
-    return true;
+    return rankExpected == -1;
   }
 
   /**
-   * Returns a set of subtrees into which the current tree breaks up
-   * when the node of the minimal element is removed.
-   * 
-   * @return the amount of subtrees
+   * Detaches the children of the node, which happens when the node of
+   * the minimal element is removed.
+   *
+   * @return the child of highest rank; the others follow as its siblings
    */
-  BinomialTreeNode<T>[] deleteMin () {
-    for (int i = 0; i < children.length; i++)
-      children[i].mother = Optional.empty();
-    return children;
+  BinomialTreeNode<T> deleteMin () {
+    for (BinomialTreeNode<T> c = child; c != null; c = c.sibling)
+      c.mother = null;
+    return child;
   }
 
-  @SuppressWarnings("unchecked") public BinomialTreeNode (T element) {
-    this.children = new BinomialTreeNode[0];
+  /**
+   * Detaches the node from its siblings so that it can become a root.
+   */
+  void detach () {
+    mother = null;
+    sibling = null;
+  }
+
+  public BinomialTreeNode (T element) {
     this.element = element;
-    this.mother = Optional.empty();
-    this.handle = new BinomialHeapHandle<T>(this);
   }
 
   /**
    * Determines the minimum element in the subtree.
-   * 
+   *
    * @return the minimum element
    */
   public T min () {
@@ -83,63 +93,81 @@ public class BinomialTreeNode<T extends Comparable<T>> {
 
   /**
    * Returns the rank of the subtree
-   * 
+   *
    * @return rank of the subtree
    */
   public int rank () {
-    return children.length;
+    return rank;
   }
 
   /**
-   * This method repairs the tree from the current node upwards if
-   * a key has decreased.
+   * This method exchanges the node with its mother. The node takes over
+   * the place, rank and children of the mother, the mother those of the
+   * node. Moving the nodes instead of the elements keeps the handles valid.
    */
-  private void siftUp () {
-    if (!mother.isPresent()) {
-      /*
-       * If there is no mother node, we are at the root of the tree.
-       * We therefore propagate the change to the pile.
-       */
-      propagateRootChange.get().accept(this);
-      return;
+  private void swapWithMother () {
+    BinomialTreeNode<T> m = mother;
+    BinomialTreeNode<T> grandmother = m.mother;
+    BinomialTreeNode<T> childThis = child;
+    BinomialTreeNode<T> siblingThis = sibling;
+    int rankThis = rank;
+
+    /*
+     * In the list of children of the mother, the mother takes our place.
+     */
+    BinomialTreeNode<T> childNew;
+    if (m.child == this)
+      childNew = m;
+    else {
+      childNew = m.child;
+      BinomialTreeNode<T> c = m.child;
+      while (c.sibling != this)
+        c = c.sibling;
+      c.sibling = m;
     }
-    if (mother.get().element.compareTo(this.element) > 0) {
-      /*
-       * If our element is smaller than the mother's, we exchange it
-       * for her element. We also make sure that the handles continue
-       * to point to the correct nodes. Finally, we continue with the
-       * repair at the mother.
-       */
-      
-      T elementThis = this.element;
-      BinomialHeapHandle<T> handleThis = handle;
-
-      handle.setNode(mother.get());
-      mother.get().handle.setNode(this);
-
-      this.handle = mother.get().handle;
-      this.element = mother.get().element;
-
-      mother.get().element = elementThis;
-      mother.get().handle = handleThis;
-
-      mother.get().siftUp();
+
+    /*
+     * We take the place of the mother among her siblings.
+     */
+    if (grandmother != null) {
+      if (grandmother.child == m)
+        grandmother.child = this;
+      else {
+        BinomialTreeNode<T> c = grandmother.child;
+        while (c.sibling != m)
+          c = c.sibling;
+        c.sibling = this;
+      }
     }
+
+    BinomialTreeNode<T> siblingMother = m.sibling;
+    int rankMother = m.rank;
+
+    m.child = childThis;
+    m.sibling = siblingThis;
+    m.rank = rankThis;
+    for (BinomialTreeNode<T> c = m.child; c != null; c = c.sibling)
+      c.mother = m;
+
+    child = childNew;
+    sibling = siblingMother;
+    rank = rankMother;
+    mother = grandmother;
+    for (BinomialTreeNode<T> c = child; c != null; c = c.sibling)
+      c.mother = this;
   }
 
   /**
    * This method combines two trees of the same rank.
-   * 
+   *
    * @param a the first tree
    * @param b the second tree
    *
    * @return the one of the two trees to which the other was attached
    */
   public static <T extends Comparable<T>> BinomialTreeNode<T> merge (BinomialTreeNode<T> a, BinomialTreeNode<T> b) {
-    if (a.children.length != b.children.length)
+    if (a.rank != b.rank)
       throw new RuntimeException("Unable to merge trees of different rank!");
-    @SuppressWarnings("unchecked")
-    BinomialTreeNode<T>[] children = new BinomialTreeNode[a.children.length + 1];
     BinomialTreeNode<T> bigger;
     BinomialTreeNode<T> smaller;
     if (a.element.compareTo(b.element) <= 0) {
@@ -149,11 +177,10 @@ public class BinomialTreeNode<T extends Comparable<T>> {
       smaller = b;
       bigger = a;
     }
-    children[children.length - 1] = bigger;
-    for (int i = 0; i < children.length - 1; i++)
-      children[i] = smaller.children[i];
-    smaller.children = children;
-    bigger.mother = Optional.of(smaller);
+    bigger.sibling = smaller.child;
+    bigger.mother = smaller;
+    smaller.child = bigger;
+    smaller.rank++;
     return smaller;
   }
 }
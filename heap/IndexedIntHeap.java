@@ -0,0 +1,175 @@
+package heap;
+
+/**
+ * This class implements an indexed d-ary min-heap. The elements are the
+ * numbers 0 to capacity - 1, each with an int key. Keys and positions are
+ * kept in primitive arrays indexed by element, so no operation allocates.
+ * Elements with equal keys are ordered by their number.
+ */
+public class IndexedIntHeap {
+  private int arity;
+
+  /**
+   * The elements in heap order
+   */
+  private int[] elements;
+
+  /**
+   * The key of each element
+   */
+  private int[] keys;
+
+  /**
+   * The position of each element in 'elements', -1 if it is not in the heap
+   */
+  private int[] positions;
+
+  private int size;
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * This constructor builds an empty 4-ary heap.
+   *
+   * @param capacity number of possible elements
+   */
+  public IndexedIntHeap(int capacity) {
+    this(capacity, 4);
+  }
+
+  /**
+   * This constructor builds an empty heap.
+   *
+   * @param capacity number of possible elements
+   * @param arity number of children per node
+   */
+  public IndexedIntHeap(int capacity, int arity) {
+    if (arity < 2)
+      throw new IllegalArgumentException("The arity must be at least 2");
+    this.arity = arity;
+    elements = new int[capacity];
+    keys = new int[capacity];
+    positions = new int[capacity];
+    for (int i = 0; i < capacity; i++)
+      positions[i] = -1;
+    size = 0;
+  }
+
+  public boolean contains(int element) {
+    return positions[element] >= 0;
+  }
+
+  public int getKey(int element) {
+    return keys[element];
+  }
+
+  /**
+   * This method adds an element to the heap.
+   *
+   * @param element to be added; must not be in the heap yet
+   * @param key key of the element
+   */
+  public void insert(int element, int key) {
+    if (positions[element] >= 0)
+      throw new RuntimeException("Element " + element + " is already in the heap");
+    keys[element] = key;
+    elements[size] = element;
+    positions[element] = size;
+    siftUp(size++);
+  }
+
+  /**
+   * This method lowers the key of an element in the heap.
+   *
+   * @param element the element; must be in the heap
+   * @param key the new key
+   */
+  public void decreaseKey(int element, int key) {
+    if (positions[element] < 0)
+      throw new IllegalArgumentException("Element " + element + " is not in the heap");
+    if (key > keys[element])
+      throw new RuntimeException("Do you know what 'smaller' means?");
+    keys[element] = key;
+    siftUp(positions[element]);
+  }
+
+  /**
+   * This method determines the minimum element in the heap.
+   *
+   * @return the minimum element
+   */
+  public int peek() {
+    if (size == 0)
+      throw new RuntimeException("Empty :-(");
+    return elements[0];
+  }
+
+  /**
+   * This method removes the minimum element from the heap and
+   * returns it.
+   *
+   * @return the minimum element
+   */
+  public int poll() {
+    int min = peek();
+    positions[min] = -1;
+    size--;
+    if (size > 0) {
+      elements[0] = elements[size];
+      positions[elements[0]] = 0;
+      siftDown(0);
+    }
+    return min;
+  }
+
+  /**
+   * This method removes all elements. It takes time proportional to the
+   * number of elements in the heap, not to the capacity.
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++)
+      positions[elements[i]] = -1;
+    size = 0;
+  }
+
+  private boolean less(int a, int b) {
+    return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+  }
+
+  private void siftUp(int position) {
+    int element = elements[position];
+    while (position > 0) {
+      int parent = (position - 1) / arity;
+      if (!less(element, elements[parent]))
+        break;
+      elements[position] = elements[parent];
+      positions[elements[position]] = position;
+      position = parent;
+    }
+    elements[position] = element;
+    positions[element] = position;
+  }
+
+  private void siftDown(int position) {
+    int element = elements[position];
+    while (true) {
+      int first = arity * position + 1;
+      if (first >= size)
+        break;
+      int last = Math.min(first + arity, size);
+      int min = first;
+      for (int child = first + 1; child < last; child++)
+        if (less(elements[child], elements[min]))
+          min = child;
+      if (!less(elements[min], element))
+        break;
+      elements[position] = elements[min];
+      positions[elements[position]] = position;
+      position = min;
+    }
+    elements[position] = element;
+    positions[element] = position;
+  }
+}
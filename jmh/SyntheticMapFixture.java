@@ -0,0 +1,102 @@
+import java.io.File;
+import java.util.Random;
+import benchmark.MapFixture;
+
+/**
+ * This class implements the benchmark fixture on a synthetic map
+ * (SyntheticOsm). The points and the queries are random but the same in
+ * every run.
+ */
+public class SyntheticMapFixture implements MapFixture {
+  private static final int POINTS = 1000;
+  private static final int QUERIES = 20;
+
+  private MapGraph graph;
+  private MapPoint[] points;
+  private MapPoint[][] queries;
+  private SearchMode mode;
+  private Profile profile;
+
+  public String write(int size) throws Exception {
+    File file = File.createTempFile("benchmark", ".osm");
+    file.deleteOnExit();
+    SyntheticOsm.write(file.getPath(), size, 1);
+    return file.getPath();
+  }
+
+  public Object parse(String fileName, boolean singlePass) throws Exception {
+    return singlePass ? MapParser.parseFile(fileName, true) : MapParser.parseFile(fileName);
+  }
+
+  public void load(int size, String length) throws Exception {
+    String fileName = write(size);
+    graph = MapParser.parseFile(fileName);
+    new File(fileName).delete();
+    Random random = new Random(2);
+    points = new MapPoint[POINTS];
+    for (int i = 0; i < points.length; i++)
+      points[i] = randomPoint(random, size);
+    int cells;
+    switch (length) {
+      case "short":
+        cells = Math.max(1, size / 20);
+        break;
+      case "medium":
+        cells = size / 4;
+        break;
+      case "long":
+        cells = size - 1;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown query length: " + length);
+    }
+    queries = queries(random, size, cells, QUERIES);
+  }
+
+  public void prepare(String mode, String profile, boolean chains) {
+    this.mode = SearchMode.valueOf(mode);
+    this.profile = Profile.valueOf(profile);
+    if (this.mode == SearchMode.CONTRACTION_HIERARCHY)
+      graph.prepareContractionHierarchy();
+    if (this.mode == SearchMode.ALT)
+      graph.prepareLandmarks();
+    if (chains)
+      graph.prepareChainCompression();
+  }
+
+  public int getPointCount() {
+    return points.length;
+  }
+
+  public Object closest(int i) {
+    return graph.closest(points[i]);
+  }
+
+  public int getQueryCount() {
+    return queries.length;
+  }
+
+  public Object route(int i) {
+    return graph.route(queries[i][0], queries[i][1], mode, profile);
+  }
+
+  private static MapPoint randomPoint(Random random, int size) {
+    return new MapPoint(SyntheticOsm.LAT_SOUTH + random.nextDouble() * size * SyntheticOsm.LAT_STEP,
+        SyntheticOsm.LON_WEST + random.nextDouble() * size * SyntheticOsm.LON_STEP);
+  }
+
+  /**
+   * This method creates pairs of points that are 'cells' rows and columns
+   * apart in the grid.
+   */
+  private static MapPoint[][] queries(Random random, int size, int cells, int count) {
+    MapPoint[][] queries = new MapPoint[count][];
+    for (int i = 0; i < count; i++) {
+      MapPoint from = randomPoint(random, size - cells);
+      MapPoint to = new MapPoint(from.getLat() + cells * SyntheticOsm.LAT_STEP,
+          from.getLon() + cells * SyntheticOsm.LON_STEP);
+      queries[i] = random.nextBoolean() ? new MapPoint[] { from, to } : new MapPoint[] { to, from };
+    }
+    return queries;
+  }
+}
@@ -0,0 +1,47 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures MapGraph.closest() on random points of a synthetic
+ * map with 'size' x 'size' nodes. Every invocation looks up the next
+ * point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClosestBenchmark {
+  @Param("200")
+  public int size;
+
+  private MapFixture fixture;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    fixture = MapFixture.create();
+    fixture.load(size, "short");
+  }
+
+  @Benchmark
+  public Object closest() {
+    if (++next == fixture.getPointCount())
+      next = 0;
+    return fixture.closest(next);
+  }
+}
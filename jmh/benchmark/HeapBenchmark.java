@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import heap.BinomialHeap;
+import heap.IndexedIntHeap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * This class measures the operations of the binomial heap and of the
+ * indexed int heap on N random keys.
+ *
+ * Every invocation runs an operation on all N keys. The heaps are built
+ * by the states before each invocation, so a measured poll() or
+ * decreaseKey() does not include the inserts that fill the heap, and a
+ * measured insert() does not include the polls that empty it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HeapBenchmark {
+  private static final int N = 100_000;
+
+  private static final int[] KEYS = new Random(1).ints(N, 0, Integer.MAX_VALUE / 2).toArray();
+
+  /*
+   * The keys are boxed in advance so that the binomial heap benchmarks do
+   * not measure the boxing.
+   */
+  private static final Integer[] BOXED_KEYS = new Integer[N];
+  private static final Integer[] BOXED_SMALLER_KEYS = new Integer[N];
+
+  static {
+    for (int i = 0; i < N; i++) {
+      BOXED_KEYS[i] = KEYS[i];
+      BOXED_SMALLER_KEYS[i] = KEYS[i] / 2;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class EmptyBinomialHeap {
+    BinomialHeap<Integer> heap;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      heap = new BinomialHeap<>();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class FullBinomialHeap {
+    BinomialHeap<Integer> heap;
+    Object[] handles = new Object[N];
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      heap = new BinomialHeap<>();
+      for (int i = 0; i < N; i++)
+        handles[i] = heap.insert(BOXED_KEYS[i]);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class EmptyIndexedHeap {
+    IndexedIntHeap heap;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      heap = new IndexedIntHeap(N);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class FullIndexedHeap {
+    IndexedIntHeap heap;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      heap = new IndexedIntHeap(N);
+      for (int i = 0; i < N; i++)
+        heap.insert(i, KEYS[i]);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public Object binomialInsert(EmptyBinomialHeap state) {
+    for (int i = 0; i < N; i++)
+      state.heap.insert(BOXED_KEYS[i]);
+    return state.heap;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void binomialPoll(FullBinomialHeap state, Blackhole blackhole) {
+    while (state.heap.getSize() > 0)
+      blackhole.consume(state.heap.poll());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public Object binomialDecreaseKey(FullBinomialHeap state) {
+    for (int i = 0; i < N; i++)
+      state.heap.replaceWithSmallerElement(state.handles[i], BOXED_SMALLER_KEYS[i]);
+    return state.heap;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public Object indexedInsert(EmptyIndexedHeap state) {
+    for (int i = 0; i < N; i++)
+      state.heap.insert(i, KEYS[i]);
+    return state.heap;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public void indexedPoll(FullIndexedHeap state, Blackhole blackhole) {
+    while (state.heap.getSize() > 0)
+      blackhole.consume(state.heap.poll());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(N)
+  public Object indexedDecreaseKey(FullIndexedHeap state) {
+    for (int i = 0; i < N; i++)
+      state.heap.decreaseKey(i, KEYS[i] / 2);
+    return state.heap;
+  }
+}
@@ -0,0 +1,92 @@
+package benchmark;
+
+/**
+ * This interface gives the benchmarks access to the map classes. JMH
+ * does not accept benchmarks in the default package, and the default
+ * package cannot be imported from a named package, so the map classes
+ * are used through this interface. It is implemented by the class
+ * SyntheticMapFixture in the default package.
+ */
+public interface MapFixture {
+  /**
+   * This method creates the fixture.
+   *
+   * @return a new instance of SyntheticMapFixture
+   */
+  static MapFixture create() {
+    try {
+      return Class.forName("SyntheticMapFixture").asSubclass(MapFixture.class).getDeclaredConstructor()
+          .newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * This method writes a synthetic map with 'size' x 'size' nodes to a
+   * temporary file.
+   *
+   * @param size number of rows and columns of the grid
+   *
+   * @return name of the file
+   */
+  String write(int size) throws Exception;
+
+  /**
+   * This method parses a map file.
+   *
+   * @param fileName name of the file
+   * @param singlePass whether the SAX parser is used
+   *
+   * @return the map graph
+   */
+  Object parse(String fileName, boolean singlePass) throws Exception;
+
+  /**
+   * This method writes and parses a synthetic map with 'size' x 'size'
+   * nodes and creates random points and queries on it.
+   *
+   * @param size number of rows and columns of the grid
+   * @param length 'short', 'medium' or 'long'; the queries go 'size' / 20,
+   *          'size' / 4 or 'size' - 1 rows and columns of the grid
+   */
+  void load(int size, String length) throws Exception;
+
+  /**
+   * This method prepares the graph for a search mode.
+   *
+   * @param mode name of the search mode
+   * @param profile name of the profile
+   * @param chains whether the chains are compressed
+   */
+  void prepare(String mode, String profile, boolean chains);
+
+  /**
+   * This method returns the number of random points.
+   */
+  int getPointCount();
+
+  /**
+   * This method searches the node closest to a random point.
+   *
+   * @param i number of the point
+   *
+   * @return the node
+   */
+  Object closest(int i);
+
+  /**
+   * This method returns the number of queries.
+   */
+  int getQueryCount();
+
+  /**
+   * This method runs a query with the mode and the profile given to
+   * prepare().
+   *
+   * @param i number of the query
+   *
+   * @return the routing result
+   */
+  Object route(int i);
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the parsing of a synthetic map with 'size' x
+ * 'size' nodes by the pipelined parser and by the SAX parser. The file
+ * is written once before the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserBenchmark {
+  @Param("200")
+  public int size;
+
+  private MapFixture fixture;
+  private String fileName;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    fixture = MapFixture.create();
+    fileName = fixture.write(size);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    new File(fileName).delete();
+  }
+
+  @Benchmark
+  public Object parseFile() throws Exception {
+    return fixture.parse(fileName, false);
+  }
+
+  @Benchmark
+  public Object parseFileSax() throws Exception {
+    return fixture.parse(fileName, true);
+  }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the search modes on short, medium and long queries
+ * on a synthetic map with 'size' x 'size' nodes. Every invocation runs
+ * the next query.
+ *
+ * The preprocessing needed by a mode (contraction hierarchy, landmarks,
+ * compressed chains) is done before the measurement. The profiles and
+ * the compressed chains are selected with the parameters, e.g.
+ * -p mode=ASTAR -p profile=CAR,BIKE,FOOT or -p chains=true.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RouteBenchmark {
+  @Param("200")
+  public int size;
+
+  @Param({ "DIJKSTRA", "ASTAR", "BIDIRECTIONAL", "CONTRACTION_HIERARCHY", "ALT" })
+  public String mode;
+
+  @Param("DEFAULT")
+  public String profile;
+
+  @Param({ "short", "medium", "long" })
+  public String length;
+
+  @Param("false")
+  public boolean chains;
+
+  private MapFixture fixture;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    fixture = MapFixture.create();
+    fixture.load(size, length);
+    fixture.prepare(mode, profile, chains);
+  }
+
+  @Benchmark
+  public Object route() {
+    if (++next == fixture.getQueryCount())
+      next = 0;
+    return fixture.route(next);
+  }
+}